@@ -0,0 +1,76 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.benchmarks;
+
+import cs.isu.edu.cs3321.lightsout.Game;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the rules of the game: a move, a reset and the winner check
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GameBenchmark {
+
+    @Param({"5", "32", "1024"})
+    int size;
+
+    private Game game;
+    private int cell;
+
+    /**
+     * Creates the game played by every benchmark
+     */
+    @Setup
+    public void setup() {
+        game = new Game(size, size);
+    }
+
+    /**
+     * Selects every cell of the board in turn, so edges, corners and the interior are all measured
+     */
+    @Benchmark
+    public void update() {
+        int next = cell;
+        game.update(next % size, next / size);
+        cell = next + 1 == size * size ? 0 : next + 1;
+    }
+
+    /**
+     * Generates a new board
+     */
+    @Benchmark
+    public void reset() {
+        game.reset();
+    }
+
+    /**
+     * Checks the board for a win
+     *
+     * @return The result of the check, so it is not optimized away
+     */
+    @Benchmark
+    public boolean checkWinner() {
+        return game.checkWinner();
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.gson.Gson;
+import cs.isu.edu.cs3321.lightsout.ConcurrentGame;
+import cs.isu.edu.cs3321.lightsout.GameSnapshot;
+import cs.isu.edu.cs3321.lightsout.GameState;
+import cs.isu.edu.cs3321.lightsout.WireDecoder;
+import cs.isu.edu.cs3321.lightsout.WireEncoder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the forms a state is sent in: JSON, serialized by Jackson as the server does and deserialized by Gson as
+ * the client does, and the binary form of {@code WireFormat}
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SerializationBenchmark {
+
+    @Param({"5", "32"})
+    int size;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Gson gson = new Gson();
+    private GameSnapshot snapshot;
+    private GameState state;
+    private String json;
+    private byte[] bytes;
+
+    /**
+     * Creates the state and its encoded forms
+     *
+     * @throws JsonProcessingException if the state cannot be serialized
+     */
+    @Setup
+    public void setup() throws JsonProcessingException {
+        snapshot = new ConcurrentGame(size, size).getSnapshot();
+        state = snapshot.toState();
+        json = mapper.writeValueAsString(state);
+        bytes = WireEncoder.encode(snapshot);
+    }
+
+    /**
+     * Serializes the state with Jackson
+     *
+     * @return The serialized state
+     * @throws JsonProcessingException if the state cannot be serialized
+     */
+    @Benchmark
+    public byte[] jacksonSerialize() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(state);
+    }
+
+    /**
+     * Deserializes the state with a new Gson instance per call
+     *
+     * @return The deserialized state
+     */
+    @Benchmark
+    public GameState gsonDeserialize() {
+        Gson gson = new Gson();
+        return gson.fromJson(json, GameState.class);
+    }
+
+    /**
+     * Deserializes the state with a shared Gson instance, as the client does
+     *
+     * @return The deserialized state
+     */
+    @Benchmark
+    public GameState gsonSharedDeserialize() {
+        return gson.fromJson(json, GameState.class);
+    }
+
+    /**
+     * Encodes the state in binary form
+     *
+     * @return The encoded state
+     */
+    @Benchmark
+    public byte[] binaryEncode() {
+        return WireEncoder.encode(snapshot);
+    }
+
+    /**
+     * Decodes the binary form of the state into the form used by the client
+     *
+     * @return The decoded state
+     */
+    @Benchmark
+    public GameState binaryDecode() {
+        return WireDecoder.decodeState(bytes);
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import cs.isu.edu.cs3321.lightsout.BoardGenerator;
+import cs.isu.edu.cs3321.lightsout.WireEncoder;
+import cs.isu.edu.cs3321.lightsout.WireFormat;
+import cs.isu.edu.cs3321.server.GameRegistry;
+import cs.isu.edu.cs3321.server.LOServer;
+import io.javalin.Javalin;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of a full HTTP round trip against a server running in the same process, using the same requests as the
+ * client
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ServerBenchmark {
+
+    private Javalin app;
+    private HttpClient client;
+    private String base;
+
+    /**
+     * Starts the server on a free port and creates the game used by the benchmarks
+     *
+     * @throws IOException          if the game cannot be created
+     * @throws InterruptedException if creating the game is interrupted
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException, InterruptedException {
+        GameRegistry registry = new GameRegistry(16, Duration.ofHours(1), 64L * 1024 * 1024, BoardGenerator.DEFAULT);
+        app = LOServer.start(0, registry, new QueuedThreadPool(200, 8, 60000));
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(20))
+                .build();
+
+        HttpRequest create = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + app.port() + "/api/games"))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        String body = client.send(create, HttpResponse.BodyHandlers.ofString()).body();
+        String id = new Gson().fromJson(body, JsonObject.class).get("id").getAsString();
+        base = "http://localhost:" + app.port() + "/api/games/" + id;
+    }
+
+    /**
+     * Stops the server
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Fetches the state of the game
+     *
+     * @return The response body
+     * @throws IOException          if the request fails
+     * @throws InterruptedException if the request is interrupted
+     */
+    @Benchmark
+    public String state() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(base + "/state"))
+                .GET()
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    /**
+     * Selects a random cell of the game
+     *
+     * @return The response body
+     * @throws IOException          if the request fails
+     * @throws InterruptedException if the request is interrupted
+     */
+    @Benchmark
+    public String update() throws IOException, InterruptedException {
+        ThreadLocalRandom rand = ThreadLocalRandom.current();
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(base + "/update"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("[" + rand.nextInt(5) + "," + rand.nextInt(5) + "]"))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    /**
+     * Fetches the state of the game in binary form
+     *
+     * @return The response body
+     * @throws IOException          if the request fails
+     * @throws InterruptedException if the request is interrupted
+     */
+    @Benchmark
+    public byte[] stateBinary() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(base + "/state"))
+                .header("Accept", WireFormat.STATE_TYPE)
+                .GET()
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofByteArray()).body();
+    }
+
+    /**
+     * Selects a random cell of the game with a binary move, receiving the state in binary form
+     *
+     * @return The response body
+     * @throws IOException          if the request fails
+     * @throws InterruptedException if the request is interrupted
+     */
+    @Benchmark
+    public byte[] updateBinary() throws IOException, InterruptedException {
+        ThreadLocalRandom rand = ThreadLocalRandom.current();
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(base + "/update"))
+                .header("Content-Type", WireFormat.MOVE_TYPE)
+                .header("Accept", WireFormat.STATE_TYPE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(WireEncoder.encodeMove(rand.nextInt(5), rand.nextInt(5))))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofByteArray()).body();
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import cs.isu.edu.cs3321.lightsout.BoardGenerator;
+import cs.isu.edu.cs3321.lightsout.WireEncoder;
+import cs.isu.edu.cs3321.lightsout.WireFormat;
+import cs.isu.edu.cs3321.server.GameRegistry;
+import cs.isu.edu.cs3321.server.LOServer;
+import cs.isu.edu.cs3321.server.VirtualThreadPool;
+import io.javalin.Javalin;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test comparing the platform and virtual thread modes of the server. Many client threads send moves at once,
+ * while a number of other connections are held open without sending anything, as bursty clients do between moves.
+ * The virtual mode needs the benchmarks to run on Java 21 or later, selected with {@code -Pjmh.jvm=<path to java>}.
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(64)
+public class ThreadModeBenchmark {
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"0", "2000"})
+    public int idleConnections;
+
+    private Javalin app;
+    private HttpClient client;
+    private String base;
+    private final List<Socket> idle = new ArrayList<>();
+
+    /**
+     * Starts the server in the selected mode, creates the game used by the benchmark and opens the idle connections
+     *
+     * @throws IOException          if the game cannot be created or a connection cannot be opened
+     * @throws InterruptedException if creating the game is interrupted
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException, InterruptedException {
+        GameRegistry registry = new GameRegistry(16, Duration.ofHours(1), 64L * 1024 * 1024, BoardGenerator.DEFAULT);
+        app = LOServer.start(0, registry,
+                threads.equals("virtual") ? new VirtualThreadPool() : new QueuedThreadPool(200, 8, 60000));
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(20))
+                .build();
+
+        HttpRequest create = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + app.port() + "/api/games"))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        String body = client.send(create, HttpResponse.BodyHandlers.ofString()).body();
+        String id = new Gson().fromJson(body, JsonObject.class).get("id").getAsString();
+        base = "http://localhost:" + app.port() + "/api/games/" + id;
+
+        for (int i = 0; i < idleConnections; i++) {
+            idle.add(new Socket("localhost", app.port()));
+        }
+    }
+
+    /**
+     * Closes the idle connections and stops the server
+     *
+     * @throws IOException if a connection cannot be closed
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        for (Socket socket : idle) {
+            socket.close();
+        }
+        idle.clear();
+        app.stop();
+    }
+
+    /**
+     * Selects a random cell of the game with a binary move, receiving the state in binary form
+     *
+     * @return The response body
+     * @throws IOException          if the request fails
+     * @throws InterruptedException if the request is interrupted
+     */
+    @Benchmark
+    public byte[] update() throws IOException, InterruptedException {
+        ThreadLocalRandom rand = ThreadLocalRandom.current();
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(base + "/update"))
+                .header("Content-Type", WireFormat.MOVE_TYPE)
+                .header("Accept", WireFormat.STATE_TYPE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(WireEncoder.encodeMove(rand.nextInt(5), rand.nextInt(5))))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofByteArray()).body();
+    }
+}
@@ -16,17 +16,20 @@
  */
 package cs.isu.edu.cs3321.client;
 
-import com.google.common.collect.Lists;
+import cs.isu.edu.cs3321.lightsout.Board;
 import cs.isu.edu.cs3321.lightsout.GameState;
+import javafx.application.Platform;
+import javafx.css.PseudoClass;
 import javafx.event.ActionEvent;
-import javafx.event.EventTarget;
 import javafx.fxml.FXML;
-import javafx.scene.Node;
 import javafx.scene.control.Button;
+import javafx.scene.layout.ColumnConstraints;
 import javafx.scene.layout.GridPane;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.RowConstraints;
 
 import java.io.IOException;
-import java.util.List;
+import java.util.concurrent.CompletionException;
 
 /**
  * Controller for the Board UI Component
@@ -36,11 +39,19 @@ import java.util.List;
  */
 public class BoardController {
 
-    private static final String GROWLING_GRAY = "-fx-background-color: #828282; ";
-    private static final String ROARANGE = "-fx-background-color: #f47920; ";
+    /**
+     * Style class of the buttons of the board, which are styled by board.css
+     */
+    private static final String LIGHT = "light";
+    /**
+     * Pseudo-class of the buttons whose light is on
+     */
+    private static final PseudoClass LIT = PseudoClass.getPseudoClass("lit");
 
     private LOClient app;
-    private Node[][] gridPaneArray = null;
+    private Button[] cells = null;
+    private Board shown = null;
+    private final MovePredictor prediction = new MovePredictor();
 
     @FXML
     GridPane grid;
@@ -55,33 +66,40 @@ public class BoardController {
     }
 
     /**
-     * Handles the events created when pressing the board buttons. The location of the button pressed is passed to the
-     * server.
+     * Handles the events created when pressing the board buttons. The move is shown at once and the location of the
+     * button pressed is passed to the server without waiting for its answer, which corrects the board if other players
+     * moved in the meantime or the move failed.
      *
      * @param event The resutling event
      */
     @FXML
     protected void handleBoardButtonAction(ActionEvent event) {
         Object src = event.getSource();
-        EventTarget targ = event.getTarget();
         if (src instanceof Button) {
-            Button btn = (Button) src;
-            Node node = null;
-            for (Node n : grid.getChildren()) {
-                if (btn.equals(n)) {
-                    node = n;
-                    break;
+            // each button holds the index of its cell, y * width + x
+            int index = (Integer) ((Button) src).getUserData();
+            int x = index % shown.getWidth();
+            int y = index / shown.getWidth();
+
+            if (Connection.instance().isStreaming()) {
+                try {
+                    // the new state is pushed back through the stream
+                    Connection.instance().sendMove(x, y);
+                } catch (IOException ex) {
+                    app.showExceptionDialog("Could not update the board", ex);
                 }
-            }
-            int x = GridPane.getColumnIndex(node);
-            int y = GridPane.getRowIndex(node);
-            List<Integer> list = Lists.newArrayList(x, y);
-
-            try {
-                GameState state = Connection.instance().sendUpdate(list);
-                updateGameBoard(state);
-            } catch (IOException | InterruptedException ex) {
-                app.showExceptionDialog("Could not update the board", ex);
+            } else if (prediction.isReady()) {
+                // show the move at once, then reconcile with the answer of the server
+                MovePredictor.Move move = prediction.predict(x, y);
+                updateGameBoard(prediction.shown());
+                Connection.instance().sendUpdateAsync(x, y).whenCompleteAsync((state, ex) -> {
+                    if (ex == null) {
+                        updateGameBoard(prediction.confirm(move, state));
+                    } else {
+                        updateGameBoard(prediction.rollback(move));
+                        show(null, ex, "Could not update the board");
+                    }
+                }, Platform::runLater);
             }
         }
     }
@@ -120,33 +138,55 @@ public class BoardController {
      * Resets the board display by calling the server reset api command, and updating the board
      */
     protected void reset() {
-        try {
-            GameState state = Connection.instance().resetGame();
-            updateGameBoard(state);
-        } catch (IOException | InterruptedException ex) {
-            app.showExceptionDialog("Could not reset the board.", ex);
+        Connection.instance().resetGameAsync()
+                .whenCompleteAsync((state, ex) -> show(state, ex, "Could not reset the board."), Platform::runLater);
+    }
+
+    /**
+     * Shows the state of the game an asynchronous call answered with, predicting later moves from it, or the reason it
+     * failed. Must be called on the JavaFX application thread.
+     *
+     * @param state   The state the call answered with, or null if it failed
+     * @param ex      The reason the call failed, or null if it succeeded
+     * @param message Message shown if the call failed
+     */
+    private void show(GameState state, Throwable ex, String message) {
+        if (ex == null) {
+            updateGameBoard(prediction.reset(state));
+            return;
         }
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        app.showExceptionDialog(message, cause instanceof Exception ? (Exception) cause : new Exception(cause));
     }
 
     /**
-     * Updates the displayed gameboard with the correspondign provided state
+     * Updates the displayed gameboard with the correspondign provided state. The new board is compared with the one
+     * shown a word at a time, and only the buttons of the cells which changed are restyled.
      *
      * @param state The new state of the game
      */
     private void updateGameBoard(GameState state) {
-        if (gridPaneArray == null) {
+        if (cells == null) {
             initGameBoard(state);
         }
 
-        for (int y = 0; y < grid.getRowCount(); y++) {
-            for (int x = 0; x < grid.getColumnCount(); x++) {
-                if (state.get(x, y) == 1) {
-                    ((Button) gridPaneArray[y][x]).setStyle(ROARANGE);
-                } else {
-                    ((Button) gridPaneArray[y][x]).setStyle(GROWLING_GRAY);
-                }
+        Board next = Board.create(shown.getWidth(), shown.getHeight());
+        next.fromArray(state.getBoard());
+        Board changed = shown.copy();
+        changed.xor(next);
+        long[] rows = changed.toRows();
+        int stride = changed.stride();
+        int width = shown.getWidth();
+        for (int i = 0; i < rows.length; i++) {
+            long word = rows[i];
+            while (word != 0) {
+                int x = ((i % stride) << 6) + Long.numberOfTrailingZeros(word);
+                int y = i / stride;
+                cells[y * width + x].pseudoClassStateChanged(LIT, next.get(x, y) == 1);
+                word &= word - 1;
             }
         }
+        shown = next;
 
         if (state.isWinner()) {
             app.showWinnerDialog();
@@ -160,29 +200,54 @@ public class BoardController {
      */
     private void initGameBoard(GameState state) {
         int[][] board = state.getBoard();
-        gridPaneArray = new Node[board.length][board[0].length];
-        for (int i = 0; i < board.length; i++) {
-            for (int j = 0; j < board[i].length; j++) {
+        int width = board[0].length;
+        cells = new Button[board.length * width];
+        shown = Board.create(width, board.length);
+
+        // the fxml lays out the default 5x5 board, size the grid to the board the server sent instead
+        grid.getColumnConstraints().clear();
+        grid.getRowConstraints().clear();
+        for (int x = 0; x < board[0].length; x++) {
+            ColumnConstraints column = new ColumnConstraints();
+            column.setPercentWidth(100.0 / board[0].length);
+            column.setHgrow(Priority.SOMETIMES);
+            grid.getColumnConstraints().add(column);
+        }
+        for (int y = 0; y < board.length; y++) {
+            RowConstraints row = new RowConstraints();
+            row.setPercentHeight(100.0 / board.length);
+            row.setVgrow(Priority.SOMETIMES);
+            grid.getRowConstraints().add(row);
+        }
+
+        // every button starts dark, matching the empty board first shown
+        for (int y = 0; y < board.length; y++) {
+            for (int x = 0; x < width; x++) {
                 Button btn = new Button();
                 btn.setOnAction(this::handleBoardButtonAction);
                 btn.setMaxHeight(Double.MAX_VALUE);
                 btn.setMaxWidth(Double.MAX_VALUE);
-                grid.add(btn, i, j);
-                btn.setStyle(GROWLING_GRAY);
-                gridPaneArray[i][j] = btn;
+                btn.getStyleClass().add(LIGHT);
+                btn.setUserData(y * width + x);
+                grid.add(btn, x, y);
+                cells[y * width + x] = btn;
             }
         }
     }
 
     /**
-     * Called to initialize the board
+     * Called to initialize the board. The board follows the game through a stream when the server offers one, and
+     * otherwise falls back to requesting the state.
      */
     protected void initState() {
-        try {
-            GameState state = Connection.instance().getCurrentState();
-            updateGameBoard(state);
-        } catch (IOException | InterruptedException ex) {
-            app.showExceptionDialog("Could not initialize the board", ex);
-        }
+        Connection connection = Connection.instance();
+        connection.openStreamAsync(state -> Platform.runLater(() -> updateGameBoard(state)))
+                .exceptionally(ex -> {
+                    // servers without the stream are played over plain requests
+                    connection.getCurrentStateAsync()
+                            .whenCompleteAsync((state, failure) -> show(state, failure,
+                                    "Could not initialize the board"), Platform::runLater);
+                    return null;
+                });
     }
 }
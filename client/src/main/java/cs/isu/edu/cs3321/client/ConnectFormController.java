@@ -65,8 +65,9 @@ public class ConnectFormController {
 
         if (connection.initialized && connection.test()) {
             try {
+                connection.createGame();
                 app.showBoard();
-            } catch (IOException ex) {
+            } catch (IOException | InterruptedException ex) {
                 app.showExceptionDialog("Couldn't load game board", ex);
             }
         } else {
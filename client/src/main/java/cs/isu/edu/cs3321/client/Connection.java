@@ -17,33 +17,71 @@
 package cs.isu.edu.cs3321.client;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import cs.isu.edu.cs3321.lightsout.BoardDelta;
+import cs.isu.edu.cs3321.lightsout.Constants;
+import cs.isu.edu.cs3321.lightsout.GameSnapshot;
 import cs.isu.edu.cs3321.lightsout.GameState;
+import cs.isu.edu.cs3321.lightsout.WireDecoder;
+import cs.isu.edu.cs3321.lightsout.WireEncoder;
+import cs.isu.edu.cs3321.lightsout.WireFormat;
 
 import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 
 /**
- * Singleton Helper class for connecting to the microservice backend
+ * Singleton Helper class for connecting to the microservice backend. States are requested in the binary form of
+ * {@link WireFormat}, falling back to JSON if the service answers with it. In streaming mode, moves are sent over a
+ * WebSocket and every change to the game, whoever made it, is pushed back to a listener.
+ * <p>
+ * Every call also has an asynchronous form returning a {@link CompletableFuture}, completed on a thread of the HTTP
+ * client, which user interface code should hand back to its own thread. Asynchronous moves are pipelined: up to
+ * {@link #MAX_IN_FLIGHT} are sent without waiting for earlier answers, and clicks made while that many are outstanding
+ * are coalesced into one batch, in which two selections of the same cell cancel out.
  *
  * @author Isaac D. Griffith
  * @version 1.0.0
  */
 public class Connection {
 
-    private static final String RESET_CALL = "http://%s:%s/api/reset";
-    private static final String STATE_CALL = "http://%s:%s/api/state";
-    private static final String UPDATE_CALL = "http://%s:%s/api/update";
+    private static final String CREATE_CALL = "http://%s:%s/api/games";
+    private static final String RESET_CALL = "http://%s:%s/api/games/%s/reset";
+    private static final String STATE_CALL = "http://%s:%s/api/games/%s/state";
+    private static final String UPDATE_CALL = "http://%s:%s/api/games/%s/update";
+    private static final String BATCH_CALL = "http://%s:%s/api/games/%s/update/batch";
     private static final String STATUS_CALL = "http://%s:%s/api/status";
+    private static final String STREAM_CALL = "ws://%s:%s/api/games/%s/ws";
+    private static final String ACCEPT = WireFormat.STATE_TYPE + ", application/json";
+    private static final Gson GSON = new Gson();
+
+    /**
+     * Number of asynchronous moves sent before further moves are held back and coalesced
+     */
+    public static final int MAX_IN_FLIGHT = 4;
 
     String address;
     String port;
+    String gameId;
     boolean initialized = false;
     HttpClient client;
+    WebSocket stream;
+    CompletableFuture<WebSocket> sending;
+    MoveQueue moves = new MoveQueue();
+    volatile Validated validated;
 
     /**
      * Private default constructor
@@ -89,11 +127,51 @@ public class Connection {
      * Disconnects by setting the address, port, and client to null
      */
     public void disconnect() {
+        closeStream();
         address = null;
         port = null;
+        gameId = null;
+        validated = null;
         client = null;
     }
 
+    /**
+     * Starts a new game on the service, which all subsequent calls will be made against
+     *
+     * @return The initial state of the new game
+     * @throws IOException          if there was an error connecting to the service via the network
+     * @throws InterruptedException if the request timed out
+     */
+    public GameState createGame() throws IOException, InterruptedException {
+        return createGame(Constants.MAX_X, Constants.MAX_Y);
+    }
+
+    /**
+     * Starts a new game with a board of the provided dimensions on the service, which all subsequent calls will be made
+     * against
+     *
+     * @param width  Number of columns in the board
+     * @param height Number of rows in the board
+     * @return The initial state of the new game
+     * @throws IOException          if there was an error connecting to the service via the network
+     * @throws InterruptedException if the request timed out
+     */
+    public GameState createGame(int width, int height) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(String.format(CREATE_CALL + "?width=" + width + "&height=" + height, address, port)))
+                .timeout(Duration.ofSeconds(30))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 201)
+            throw new IOException("Could not create a game: " + response.body());
+        JsonObject created = GSON.fromJson(response.body(), JsonObject.class);
+        gameId = created.get("id").getAsString();
+        moves = new MoveQueue();
+        validated = null;
+        return GSON.fromJson(created.get("state"), GameState.class);
+    }
+
     /**
      * Sends an update to the service using the list of params.
      *
@@ -103,23 +181,78 @@ public class Connection {
      * @throws InterruptedException if the update timed out
      */
     public GameState sendUpdate(List<Integer> list) throws IOException, InterruptedException {
-        Gson gson = new Gson();
-        String json = gson.toJson(list);
+        HttpRequest request = createPost(UPDATE_CALL, WireEncoder.encodeMove(list.get(0), list.get(1)));
+        return getGameState(request);
+    }
 
-        HttpRequest request = createPost(UPDATE_CALL, json);
+    /**
+     * Sends a sequence of moves, such as a solution or a replay, which the service applies as a single change
+     *
+     * @param moves The selected cells, each an [x, y] pair
+     * @return The game state after every move has been applied
+     * @throws IOException          if there was an error connecting to the service via the network
+     * @throws InterruptedException if the update timed out
+     */
+    public GameState sendUpdates(int[][] moves) throws IOException, InterruptedException {
+        HttpRequest request = createPost(BATCH_CALL, encodeMoves(moves));
         return getGameState(request);
     }
 
     /**
-     * Retrieves the current game state from the service
+     * Sends the selection of a cell without waiting for the answer. If {@link #MAX_IN_FLIGHT} moves are already
+     * outstanding, the move is held back and sent in a batch with every other move made before one of them is answered.
+     *
+     * @param x The selected column
+     * @param y The selected row
+     * @return The state of the game after the service applied the move, which may already include later moves
+     */
+    public CompletableFuture<GameState> sendUpdateAsync(int x, int y) {
+        return moves.submit(x, y);
+    }
+
+    /**
+     * Sends a sequence of moves, which the service applies as a single change, without waiting for the answer
+     *
+     * @param moves The selected cells, each an [x, y] pair
+     * @return The game state after every move has been applied
+     */
+    public CompletableFuture<GameState> sendUpdatesAsync(int[][] moves) {
+        return getGameStateAsync(createPost(BATCH_CALL, encodeMoves(moves)));
+    }
+
+    /**
+     * Retrieves the current game state from the service without waiting for the answer. Like
+     * {@link #getCurrentState()}, the request is conditional on the last state retrieved.
+     *
+     * @return The current game state
+     */
+    public CompletableFuture<GameState> getCurrentStateAsync() {
+        Validated last = validated;
+        return client.sendAsync(createConditionalGet(last), HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(response -> revalidate(last, response));
+    }
+
+    /**
+     * Calls the service to reset the game board to a random state without waiting for the answer
+     *
+     * @return The newly reset game state
+     */
+    public CompletableFuture<GameState> resetGameAsync() {
+        return getGameStateAsync(createGet(RESET_CALL));
+    }
+
+    /**
+     * Retrieves the current game state from the service. The request names the version of the last state retrieved, so
+     * while the game has not changed the service answers without sending the state again and that state is returned
+     * once more. States returned by this method may therefore be shared and must not be modified.
      *
      * @return The current game state
      * @throws IOException          if there was an error connecting to the service via the network
      * @throws InterruptedException if the request timed out
      */
     public GameState getCurrentState() throws IOException, InterruptedException {
-        HttpRequest request = createGet(STATE_CALL);
-        return getGameState(request);
+        Validated last = validated;
+        return revalidate(last, client.send(createConditionalGet(last), HttpResponse.BodyHandlers.ofByteArray()));
     }
 
     /**
@@ -135,18 +268,97 @@ public class Connection {
     }
 
     /**
-     * Constructs a new HttpRequest object using the POST method, for the provided format string of the api call, and the provided json data to be sent
+     * Switches to streaming mode, in which the state of the game is pushed to the provided listener on every change
+     * until the stream is closed. The listener is called on a background thread.
+     *
+     * @param listener Receives the state of the game, first as it is now and then after every change
+     * @throws IOException          if the stream could not be opened
+     * @throws InterruptedException if opening the stream was interrupted
+     */
+    public void openStream(Consumer<GameState> listener) throws IOException, InterruptedException {
+        try {
+            openStreamAsync(listener).get();
+        } catch (ExecutionException ex) {
+            throw new IOException("Could not open the stream", ex.getCause());
+        }
+    }
+
+    /**
+     * Switches to streaming mode without waiting for the stream to open, see {@link #openStream(Consumer)}
+     *
+     * @param listener Receives the state of the game, first as it is now and then after every change
+     * @return Completes once the stream is open, or exceptionally if it could not be opened
+     */
+    public CompletableFuture<Void> openStreamAsync(Consumer<GameState> listener) {
+        closeStream();
+        URI uri = URI.create(String.format(STREAM_CALL, address, port, gameId));
+        return client.newWebSocketBuilder()
+                .connectTimeout(Duration.ofSeconds(20))
+                .buildAsync(uri, new StreamListener(listener))
+                .thenAccept(socket -> {
+                    synchronized (this) {
+                        stream = socket;
+                        sending = CompletableFuture.completedFuture(socket);
+                    }
+                });
+    }
+
+    /**
+     * @return True if moves are sent, and changes received, through a stream
+     */
+    public synchronized boolean isStreaming() {
+        return stream != null && !stream.isOutputClosed();
+    }
+
+    /**
+     * Sends the selection of a cell through the stream. The new state reaches the listener of the stream.
+     *
+     * @param x The selected column
+     * @param y The selected row
+     * @throws IOException if the stream is not open
+     */
+    public void sendMove(int x, int y) throws IOException {
+        send(WireEncoder.encodeMove(x, y));
+    }
+
+    /**
+     * Closes the stream, if one is open, leaving streaming mode
+     */
+    public synchronized void closeStream() {
+        if (stream != null) {
+            WebSocket socket = stream;
+            sending.thenRun(() -> socket.sendClose(WebSocket.NORMAL_CLOSURE, ""));
+            stream = null;
+            sending = null;
+        }
+    }
+
+    /**
+     * Queues a frame behind those already being sent, as a WebSocket only sends one frame at a time
+     *
+     * @param frame The frame to send
+     * @throws IOException if the stream is not open
+     */
+    private synchronized void send(byte[] frame) throws IOException {
+        if (sending == null || sending.isCompletedExceptionally())
+            throw new IOException("The stream is not open");
+        sending = sending.thenCompose(socket -> socket.sendBinary(ByteBuffer.wrap(frame), true));
+    }
+
+    /**
+     * Constructs a new HttpRequest object using the POST method, for the provided format string of the api call, and the provided encoded moves to be sent
      *
      * @param apiCall Format string for the api call
-     * @param json    json data to be sent
+     * @param move    encoded moves to be sent
      * @return A HttpRequest object ready to be used with the service
      */
-    private HttpRequest createPost(String apiCall, String json) {
+    private HttpRequest createPost(String apiCall, byte[] move) {
         return HttpRequest.newBuilder()
-                .uri(URI.create(String.format(apiCall, address, port)))
+                .uri(URI.create(String.format(apiCall, address, port, gameId)))
                 .timeout(Duration.ofSeconds(30))
-                .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", WireFormat.MOVE_TYPE)
+                .header("Accept", ACCEPT)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(move))
                 .build();
     }
 
@@ -158,12 +370,46 @@ public class Connection {
      */
     private HttpRequest createGet(String apiCall) {
         return HttpRequest.newBuilder()
-                .uri(URI.create(String.format(apiCall, address, port)))
+                .uri(URI.create(String.format(apiCall, address, port, gameId)))
                 .timeout(Duration.ofSeconds(30))
+                .header("Accept", ACCEPT)
                 .GET()
                 .build();
     }
 
+    /**
+     * Constructs a request for the state of the game, which the service only answers with the state if it is not the
+     * one last retrieved
+     *
+     * @param last The state last retrieved, or null if there is none
+     * @return The newly constructed HttpRequest object ready to be used with the service
+     */
+    private HttpRequest createConditionalGet(Validated last) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .uri(URI.create(String.format(STATE_CALL, address, port, gameId)))
+                .timeout(Duration.ofSeconds(30))
+                .header("Accept", ACCEPT)
+                .GET();
+        if (last != null)
+            builder.header("If-None-Match", last.etag);
+        return builder.build();
+    }
+
+    /**
+     * Reads the state of the game from the answer to a conditional request, and keeps it for the next request
+     *
+     * @param last     The state the request was conditional on, or null if there was none
+     * @param response The answer of the service
+     * @return The last state if the service answered that it has not changed, otherwise the state it sent
+     */
+    private GameState revalidate(Validated last, HttpResponse<byte[]> response) {
+        if (response.statusCode() == 304 && last != null)
+            return last.state;
+        GameState state = toGameState(response);
+        validated = response.headers().firstValue("ETag").map(etag -> new Validated(etag, state)).orElse(null);
+        return state;
+    }
+
     /**
      * Sends a GET request to obtain the current state of the game using the provided HttpRequest object
      *
@@ -173,10 +419,44 @@ public class Connection {
      * @throws InterruptedException if the request timed out
      */
     private GameState getGameState(HttpRequest request) throws IOException, InterruptedException {
-        Gson gson = new Gson();
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-        GameState state = gson.fromJson(response.body(), GameState.class);
-        return state;
+        return toGameState(client.send(request, HttpResponse.BodyHandlers.ofByteArray()));
+    }
+
+    /**
+     * Sends a request for the state of the game without waiting for the answer
+     *
+     * @param request the request object for the call
+     * @return The state of the game the service answers with
+     */
+    private CompletableFuture<GameState> getGameStateAsync(HttpRequest request) {
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()).thenApply(Connection::toGameState);
+    }
+
+    /**
+     * Reads the state of the game from an answer of the service, in whichever form it was sent
+     *
+     * @param response The answer of the service
+     * @return The state of the game
+     */
+    private static GameState toGameState(HttpResponse<byte[]> response) {
+        String contentType = response.headers().firstValue("Content-Type").orElse("");
+        if (contentType.startsWith(WireFormat.STATE_TYPE))
+            return WireDecoder.decodeState(response.body());
+        return GSON.fromJson(new String(response.body(), StandardCharsets.UTF_8), GameState.class);
+    }
+
+    /**
+     * Encodes a sequence of moves back to back
+     *
+     * @param moves The selected cells, each an [x, y] pair
+     * @return The encoded moves
+     */
+    private static byte[] encodeMoves(int[][] moves) {
+        ByteBuffer body = ByteBuffer.allocate(moves.length * WireFormat.MOVE_BYTES);
+        for (int[] move : moves) {
+            body.put(WireEncoder.encodeMove(move[0], move[1]));
+        }
+        return body.array();
     }
 
     /**
@@ -193,4 +473,166 @@ public class Connection {
             return false;
         }
     }
+
+    /**
+     * A state retrieved from the service, along with the entity tag the service gave it
+     */
+    private static final class Validated {
+
+        private final String etag;
+        private final GameState state;
+
+        private Validated(String etag, GameState state) {
+            this.etag = etag;
+            this.state = state;
+        }
+    }
+
+    /**
+     * Pipeline of asynchronous moves. Moves are sent at once until {@link #MAX_IN_FLIGHT} are outstanding, after which
+     * they are gathered until an answer arrives and then sent together as a batch. As moves commute, the order in which
+     * the service applies them does not change the board.
+     */
+    private class MoveQueue {
+
+        private final Set<Long> pending = new LinkedHashSet<>();
+        private CompletableFuture<GameState> batch;
+        private int inFlight;
+
+        /**
+         * Sends a move now, or adds it to the next batch if too many are outstanding
+         *
+         * @param x The selected column
+         * @param y The selected row
+         * @return The state of the game after the request carrying the move is applied
+         */
+        CompletableFuture<GameState> submit(int x, int y) {
+            synchronized (this) {
+                if (inFlight >= MAX_IN_FLIGHT || batch != null) {
+                    long cell = (long) x << 32 | y;
+                    if (!pending.remove(cell))
+                        pending.add(cell);
+                    if (batch == null)
+                        batch = new CompletableFuture<>();
+                    return batch;
+                }
+                inFlight++;
+            }
+            return track(getGameStateAsync(createPost(UPDATE_CALL, WireEncoder.encodeMove(x, y))));
+        }
+
+        /**
+         * Frees the slot of a request once it is answered, whether or not it succeeded
+         *
+         * @param request The outstanding request
+         * @return The request
+         */
+        private CompletableFuture<GameState> track(CompletableFuture<GameState> request) {
+            request.whenComplete((state, ex) -> answered());
+            return request;
+        }
+
+        /**
+         * Sends the gathered moves, if there are any, in the slot freed by an answer. Moves which cancelled out
+         * entirely are answered with the current state of the game instead.
+         */
+        private void answered() {
+            CompletableFuture<GameState> waiting;
+            int[][] cells;
+            synchronized (this) {
+                inFlight--;
+                if (batch == null)
+                    return;
+                waiting = batch;
+                batch = null;
+                cells = new int[pending.size()][];
+                int next = 0;
+                for (long cell : pending) {
+                    cells[next++] = new int[]{(int) (cell >>> 32), (int) cell};
+                }
+                pending.clear();
+                inFlight++;
+            }
+            CompletableFuture<GameState> request = cells.length == 0 ? getCurrentStateAsync() : sendUpdatesAsync(cells);
+            track(request).whenComplete((state, ex) -> {
+                if (ex != null)
+                    waiting.completeExceptionally(ex);
+                else
+                    waiting.complete(state);
+            });
+        }
+    }
+
+    /**
+     * Listener of the stream, which keeps the state of the game up to date from the frames the service pushes. A delta
+     * is only applied to the version it follows, if one is missed the full state is requested again.
+     */
+    private class StreamListener implements WebSocket.Listener {
+
+        private final Consumer<GameState> listener;
+        private ByteBuffer frame = ByteBuffer.allocate(256);
+        private GameSnapshot current;
+        private boolean resyncing;
+
+        /**
+         * Constructor
+         *
+         * @param listener Receives the state of the game after every change
+         */
+        StreamListener(Consumer<GameState> listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+            if (frame.remaining() < data.remaining()) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(frame.capacity() * 2, frame.position() + data.remaining()));
+                frame.flip();
+                frame = larger.put(frame);
+            }
+            frame.put(data);
+            if (last) {
+                frame.flip();
+                receive(frame);
+                frame.clear();
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        /**
+         * Applies a complete frame to the state of the game
+         *
+         * @param data The frame
+         */
+        private void receive(ByteBuffer data) {
+            if (WireDecoder.isDelta(data)) {
+                BoardDelta delta = WireDecoder.decodeDelta(data);
+                if (current == null || delta.getVersion() <= current.getVersion())
+                    return;
+                if (delta.getVersion() != current.getVersion() + 1) {
+                    if (!resyncing) {
+                        try {
+                            send(new byte[0]);
+                            resyncing = true;
+                        } catch (IOException ex) {
+                            // the stream is closing, so there is nothing left to resynchronize
+                        }
+                    }
+                    return;
+                }
+                current = delta.applyTo(current);
+            } else {
+                GameSnapshot snapshot = WireDecoder.decode(data);
+                if (current != null && snapshot.getVersion() <= current.getVersion())
+                    return;
+                current = snapshot;
+                resyncing = false;
+            }
+            listener.accept(current.toState());
+        }
+    }
 }
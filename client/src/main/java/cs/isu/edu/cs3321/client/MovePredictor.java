@@ -0,0 +1,206 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.client;
+
+import cs.isu.edu.cs3321.lightsout.Board;
+import cs.isu.edu.cs3321.lightsout.GameSnapshot;
+import cs.isu.edu.cs3321.lightsout.GameState;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Predicts the board a player sees while their moves are on the way to the service. Each move is pressed locally at
+ * once and remembered until the service's state is known to include it. The board shown is the base, a state the
+ * service has sent, with every remembered move pressed on top. An answer either confirms the prediction, or corrects
+ * it when other players moved in between, and a failed move is rolled back.
+ * <p>
+ * Answers to pipelined moves can arrive out of order, and the state sent with one answer may already include moves
+ * whose own answers are still on the way. Every move therefore remembers the version its answer was sent at, which
+ * includes the move, and a newer answer only becomes the base once each move which was unanswered when it arrived has
+ * been answered too. Then a move answered at or before the version of the base is part of it and forgotten, and only
+ * the moves answered after it or not yet answered are pressed on top, so no move is ever pressed twice. As moves
+ * commute, pressing them on top of the base gives the board the service reaches. Only used from the JavaFX application
+ * thread.
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public class MovePredictor {
+
+    private final LinkedList<Move> pending = new LinkedList<>();
+    private final List<Answer> answers = new ArrayList<>();
+    private GameState confirmed;
+
+    /**
+     * Starts predicting from a state sent by the service, forgetting every unanswered move
+     *
+     * @param state The state sent by the service
+     * @return The state to show
+     */
+    public GameState reset(GameState state) {
+        pending.clear();
+        answers.clear();
+        confirmed = state;
+        return state;
+    }
+
+    /**
+     * @return True if a state of the service has been received to predict from
+     */
+    public boolean isReady() {
+        return confirmed != null;
+    }
+
+    /**
+     * Presses a cell locally, ahead of the service. The board to show is then given by {@link #shown()}.
+     *
+     * @param x The selected column
+     * @param y The selected row
+     * @return The move, which is passed back when the service answers for it
+     */
+    public Move predict(int x, int y) {
+        Move move = new Move(x, y);
+        pending.add(move);
+        return move;
+    }
+
+    /**
+     * Reconciles the prediction with the answer of the service to a move
+     *
+     * @param move  The move, as returned when it was predicted
+     * @param state The state the service answered with, which includes the move
+     * @return The state to show
+     */
+    public GameState confirm(Move move, GameState state) {
+        // answers to moves made before the last reset are of no use
+        if (!pending.contains(move))
+            return shown();
+        move.answered = state.getVersion();
+        if (state.getVersion() > confirmed.getVersion()) {
+            List<Move> blockers = new ArrayList<>();
+            for (Move other : pending) {
+                if (!other.isAnswered())
+                    blockers.add(other);
+            }
+            answers.add(new Answer(state, blockers));
+        }
+        return settle();
+    }
+
+    /**
+     * Rolls back a move the service did not apply
+     *
+     * @param move The move, as returned when it was predicted
+     * @return The state to show, without the move
+     */
+    public GameState rollback(Move move) {
+        if (pending.remove(move))
+            move.rolledBack = true;
+        return settle();
+    }
+
+    /**
+     * Adopts the newest answer which is known to include or exclude every remembered move as the base, forgets the
+     * moves it includes, and predicts the state to show
+     *
+     * @return The state to show
+     */
+    private GameState settle() {
+        Answer newest = null;
+        for (Answer answer : answers) {
+            if (answer.isSettled() && (newest == null || answer.state.getVersion() > newest.state.getVersion()))
+                newest = answer;
+        }
+        if (newest != null && newest.state.getVersion() > confirmed.getVersion())
+            confirmed = newest.state;
+        long base = confirmed.getVersion();
+        answers.removeIf(answer -> answer.state.getVersion() <= base);
+        pending.removeIf(move -> move.isAnswered() && move.answered <= base);
+        return shown();
+    }
+
+    /**
+     * @return The base with every remembered move pressed, which is only a winner once confirmed. Its version is the
+     * newest answered so far plus one for every move still unanswered.
+     */
+    public GameState shown() {
+        if (pending.isEmpty())
+            return confirmed;
+        int[][] cells = confirmed.getBoard();
+        Board board = Board.create(cells[0].length, cells.length);
+        board.fromArray(cells);
+        long newest = confirmed.getVersion();
+        int unanswered = 0;
+        for (Move move : pending) {
+            board.press(move.x, move.y);
+            if (move.isAnswered())
+                newest = Math.max(newest, move.answered);
+            else
+                unanswered++;
+        }
+        return GameSnapshot.of(board, false, newest + unanswered).toState();
+    }
+
+    /**
+     * A move sent to the service, and the version the service answered it at once it has. Moves of the same cell are
+     * told apart, as the answer to one may include the other.
+     */
+    public static final class Move {
+
+        private final int x;
+        private final int y;
+        private long answered = -1;
+        private boolean rolledBack;
+
+        private Move(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        private boolean isAnswered() {
+            return answered >= 0;
+        }
+    }
+
+    /**
+     * A state the service answered with, and the moves which were unanswered when it arrived, which it may or may not
+     * include
+     */
+    private static final class Answer {
+
+        private final GameState state;
+        private final List<Move> blockers;
+
+        private Answer(GameState state, List<Move> blockers) {
+            this.state = state;
+            this.blockers = blockers;
+        }
+
+        /**
+         * @return True once every blocking move has been answered or rolled back
+         */
+        private boolean isSettled() {
+            for (Move move : blockers) {
+                if (!move.isAnswered() && !move.rolledBack)
+                    return false;
+            }
+            return true;
+        }
+    }
+}
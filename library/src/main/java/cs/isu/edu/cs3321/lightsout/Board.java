@@ -0,0 +1,224 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.lightsout;
+
+import static cs.isu.edu.cs3321.lightsout.Constants.MAX_DIMENSION;
+
+/**
+ * Bit-packed Lights Out board. Boards of up to 64 cells are a {@link PackedBoard}, held in a single long, and larger
+ * boards are a {@link WideBoard}, held as rows of words. Both can exchange their lights as row aligned words, with
+ * {@code ceil(width / 64)} words per row and the cell at column x in bit {@code x % 64} of word {@code x / 64}.
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public abstract class Board {
+
+    /**
+     * Creates an empty board of the provided dimensions, using the most compact representation available
+     *
+     * @param width  Number of columns in the board
+     * @param height Number of rows in the board
+     * @return The new board with all lights off
+     * @throws IllegalArgumentException if either dimension is below 1 or above {@link Constants#MAX_DIMENSION}
+     */
+    public static Board create(int width, int height) {
+        if (width <= 0 || height <= 0 || width > MAX_DIMENSION || height > MAX_DIMENSION)
+            throw new IllegalArgumentException("A board cannot be " + width + "x" + height);
+        if (width * height <= PackedBoard.MAX_CELLS)
+            return new PackedBoard(width, height);
+        return new WideBoard(width, height);
+    }
+
+    /**
+     * @return Number of columns in the board
+     */
+    public abstract int getWidth();
+
+    /**
+     * @return Number of rows in the board
+     */
+    public abstract int getHeight();
+
+    /**
+     * Applies a selection of the cell at the coordinate x, y, flipping it and its orthogonal neighbors
+     *
+     * @param x The column in the board, which was selected
+     * @param y The row in the board, which was selected
+     * @throws IndexOutOfBoundsException if x, y is not a location on the board
+     */
+    public abstract void press(int x, int y);
+
+    /**
+     * Creates a board which is this board after a selection of the cell at x, y, leaving this board unchanged. The new
+     * board may share storage with this board, so neither may be changed in place afterwards.
+     *
+     * @param x The column in the board, which was selected
+     * @param y The row in the board, which was selected
+     * @return The board after the selection
+     * @throws IndexOutOfBoundsException if x, y is not a location on the board
+     */
+    abstract Board pressed(int x, int y);
+
+    /**
+     * Flips only the cell at the coordinate x, y
+     *
+     * @param x The column of the value to be flipped
+     * @param y The row of the value to be flipped
+     */
+    public abstract void flip(int x, int y);
+
+    /**
+     * Returns the value at the coordinate x, y
+     *
+     * @param x The column of the value to retrieve
+     * @param y The row of the value to retrieve
+     * @return 1 if the light is on, otherwise 0
+     */
+    public abstract int get(int x, int y);
+
+    /**
+     * Sets the value at the coordinate x, y
+     *
+     * @param x   The column of the value to be set
+     * @param y   The row of the value to be set
+     * @param val The new value, anything above 0 turns the light on
+     */
+    public abstract void set(int x, int y, int val);
+
+    /**
+     * Flips every light of this board which is on in the provided board, so pressing a set of cells on an empty board
+     * and XOR'ing it into this one has the same effect as pressing them here
+     *
+     * @param other Board with the same dimensions as this board
+     * @throws IllegalArgumentException if the dimensions of the boards differ
+     */
+    public abstract void xor(Board other);
+
+    /**
+     * @return True if every light on the board is off
+     */
+    public abstract boolean isClear();
+
+    /**
+     * @return The number of lights which are on, kept up to date by every change rather than counted on each call
+     */
+    public abstract int litCount();
+
+    /**
+     * @return A new board with the same dimensions and values as this board, sharing no storage with it
+     */
+    public abstract Board copy();
+
+    /**
+     * @return The lights of this board as row aligned words
+     */
+    public abstract long[] toRows();
+
+    /**
+     * Replaces every cell of this board with the provided row aligned words
+     *
+     * @param rows The new lights, {@code ceil(width / 64)} words per row, bits beyond the last column are discarded
+     */
+    public abstract void fromRows(long[] rows);
+
+    /**
+     * @return The number of cells on this board
+     */
+    public int cells() {
+        return getWidth() * getHeight();
+    }
+
+    /**
+     * @return The number of words used by each row in the row aligned layout
+     */
+    public int stride() {
+        return (getWidth() + 63) >>> 6;
+    }
+
+    /**
+     * Tests if the provided location x,y is a valid location
+     *
+     * @param x the column to be tested
+     * @param y the row to be tested
+     * @return True if the column and row are within bounds
+     */
+    public boolean validLocation(int x, int y) {
+        return x >= 0 && x < getWidth() && y >= 0 && y < getHeight();
+    }
+
+    /**
+     * Copies the values of this board into the row major layout used by {@link GameState}
+     *
+     * @return A new array indexed as [y][x]
+     */
+    public int[][] toArray() {
+        int[][] board = new int[getHeight()][getWidth()];
+        for (int y = 0; y < getHeight(); y++) {
+            for (int x = 0; x < getWidth(); x++) {
+                board[y][x] = get(x, y);
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Replaces the values of this board with those of an array in the layout used by {@link GameState}
+     *
+     * @param board Array indexed as [y][x] whose dimensions match this board
+     * @throws IllegalArgumentException if the dimensions of the array do not match
+     */
+    public void fromArray(int[][] board) {
+        if (board.length != getHeight())
+            throw new IllegalArgumentException("Expected " + getHeight() + " rows but found " + board.length);
+        int stride = stride();
+        long[] rows = new long[getHeight() * stride];
+        for (int y = 0; y < getHeight(); y++) {
+            if (board[y].length != getWidth())
+                throw new IllegalArgumentException("Expected " + getWidth() + " columns but found " + board[y].length);
+            for (int x = 0; x < getWidth(); x++) {
+                if (board[y][x] > 0)
+                    rows[y * stride + (x >>> 6)] |= 1L << x;
+            }
+        }
+        fromRows(rows);
+    }
+
+    /**
+     * Throws if the provided board does not have the dimensions of this board
+     *
+     * @param other The board to be tested
+     * @throws IllegalArgumentException if the dimensions differ
+     */
+    void checkDimensions(Board other) {
+        if (other.getWidth() != getWidth() || other.getHeight() != getHeight())
+            throw new IllegalArgumentException("Cannot combine a " + getWidth() + "x" + getHeight() + " board with a "
+                    + other.getWidth() + "x" + other.getHeight() + " board");
+    }
+
+    /**
+     * Throws if x, y is not a location on the board
+     *
+     * @param x The column to be tested
+     * @param y The row to be tested
+     * @throws IndexOutOfBoundsException if the column or row is out of bounds
+     */
+    void checkLocation(int x, int y) {
+        if (!validLocation(x, y))
+            throw new IndexOutOfBoundsException("Location (" + x + ", " + y + ") is not on the board");
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.lightsout;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * The change between two consecutive versions of a game: the cells whose lights were toggled, and the version and
+ * winner flag of the game afterwards. Cells are numbered {@code y * width + x}.
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public final class BoardDelta {
+
+    @Getter
+    private final long version;
+    @Getter
+    private final boolean winner;
+    private final int[] cells;
+
+    /**
+     * Constructor
+     *
+     * @param version Version of the game after the change
+     * @param winner  Whether the game has been won after the change
+     * @param cells   Numbers of the toggled cells, which must not be changed afterwards
+     */
+    public BoardDelta(long version, boolean winner, int[] cells) {
+        this.version = version;
+        this.winner = winner;
+        this.cells = cells;
+    }
+
+    /**
+     * Creates the delta of the selection of a cell
+     *
+     * @param after The state of the game immediately after the move
+     * @param x     The selected column
+     * @param y     The selected row
+     * @return The cells toggled by the move
+     */
+    public static BoardDelta ofPress(GameSnapshot after, int x, int y) {
+        int width = after.getWidth();
+        int height = after.getHeight();
+        int[] cells = new int[5];
+        int count = 0;
+        cells[count++] = y * width + x;
+        if (x > 0) cells[count++] = y * width + x - 1;
+        if (x < width - 1) cells[count++] = y * width + x + 1;
+        if (y > 0) cells[count++] = (y - 1) * width + x;
+        if (y < height - 1) cells[count++] = (y + 1) * width + x;
+        if (count < cells.length)
+            cells = Arrays.copyOf(cells, count);
+        return new BoardDelta(after.getVersion(), after.isWinner(), cells);
+    }
+
+    /**
+     * Creates the delta of a change which toggled an arbitrary set of lights
+     *
+     * @param after   The state of the game immediately after the change
+     * @param toggles Board whose lights are on where the change toggled the game
+     * @return The cells toggled by the change
+     */
+    public static BoardDelta ofToggles(GameSnapshot after, Board toggles) {
+        int width = toggles.getWidth();
+        int stride = toggles.stride();
+        long[] rows = toggles.toRows();
+        int count = 0;
+        for (long word : rows) {
+            count += Long.bitCount(word);
+        }
+
+        int[] cells = new int[count];
+        int next = 0;
+        for (int i = 0; i < rows.length; i++) {
+            int base = (i / stride) * width + (i % stride) * Long.SIZE;
+            for (long word = rows[i]; word != 0; word &= word - 1) {
+                cells[next++] = base + Long.numberOfTrailingZeros(word);
+            }
+        }
+        return new BoardDelta(after.getVersion(), after.isWinner(), cells);
+    }
+
+    /**
+     * @return Number of toggled cells
+     */
+    public int getCellCount() {
+        return cells.length;
+    }
+
+    /**
+     * @param index Index of the cell, between 0 and {@link #getCellCount()}
+     * @return The number, {@code y * width + x}, of the toggled cell
+     */
+    public int getCell(int index) {
+        return cells[index];
+    }
+
+    /**
+     * Applies this change to the state it was made from
+     *
+     * @param before The state of the game at the previous version
+     * @return The state of the game after the change
+     * @throws IndexOutOfBoundsException if a toggled cell is not on the board
+     */
+    public GameSnapshot applyTo(GameSnapshot before) {
+        Board board = before.getBoard().copy();
+        int width = board.getWidth();
+        for (int cell : cells) {
+            board.flip(cell % width, cell / width);
+        }
+        return new GameSnapshot(board, winner, version);
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.lightsout;
+
+import lombok.Getter;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Produces the starting boards of new games.
+ * <p>
+ * In {@link Mode#SOLVABLE} mode a board is built by pressing a uniformly random set of cells on an empty board. Every
+ * board built this way can be cleared by pressing the same cells again, and since the toggle matrix is linear the
+ * result is uniformly distributed over all solvable boards, without ever having to test and discard a board.
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public final class BoardGenerator {
+
+    /**
+     * How the lights of a new board are chosen
+     */
+    public enum Mode {
+        /**
+         * Every light is on or off at random, the board may not be solvable
+         */
+        RANDOM,
+        /**
+         * The board is the result of random presses on an empty board, so it is always solvable
+         */
+        SOLVABLE
+    }
+
+    /**
+     * Generator of solvable boards drawing from {@link ThreadLocalRandom}
+     */
+    public static final BoardGenerator DEFAULT = new BoardGenerator(Mode.SOLVABLE, ThreadLocalRandom::current);
+
+    @Getter
+    private final Mode mode;
+    private final Supplier<? extends Random> random;
+
+    /**
+     * Constructor
+     *
+     * @param mode   How the lights of a new board are chosen
+     * @param random Source of the random generator to use, called on the thread generating the board so that each
+     *               thread can use its own generator
+     */
+    public BoardGenerator(Mode mode, Supplier<? extends Random> random) {
+        this.mode = mode;
+        this.random = random;
+    }
+
+    /**
+     * Creates a source of random generators, one per thread, which are all derived from a single seed. Generating
+     * boards from a single thread with the same seed always gives the same sequence of boards.
+     *
+     * @param seed The seed from which the generator of every thread is derived
+     * @return A supplier returning the generator of the calling thread
+     */
+    public static Supplier<Random> seeded(long seed) {
+        SplittableRandom root = new SplittableRandom(seed);
+        ThreadLocal<Random> local = ThreadLocal.withInitial(() -> {
+            synchronized (root) {
+                return new Random(root.split().nextLong());
+            }
+        });
+        return local::get;
+    }
+
+    /**
+     * Replaces the lights of a board with a newly generated board
+     *
+     * @param board The board to fill
+     */
+    public void fill(Board board) {
+        Random rand = random.get();
+        int width = board.getWidth();
+        int height = board.getHeight();
+        int stride = board.stride();
+        long[] cells = new long[height * stride];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = rand.nextLong();
+        }
+        if (mode == Mode.RANDOM) {
+            board.fromRows(cells);
+            return;
+        }
+
+        // treat the random words as the cells to press, and work out the lights each row ends up with at once
+        long lastMask = (width & 63) == 0 ? -1L : (1L << (width & 63)) - 1;
+        for (int y = 0; y < height; y++) {
+            cells[y * stride + stride - 1] &= lastMask;
+        }
+        long[] lights = new long[cells.length];
+        for (int y = 0; y < height; y++) {
+            int row = y * stride;
+            for (int w = 0; w < stride; w++) {
+                long p = cells[row + w];
+                long lit = p ^ p << 1 ^ p >>> 1;
+                if (w > 0)
+                    lit ^= cells[row + w - 1] >>> 63;
+                if (w + 1 < stride)
+                    lit ^= cells[row + w + 1] << 63;
+                if (y > 0)
+                    lit ^= cells[row - stride + w];
+                if (y + 1 < height)
+                    lit ^= cells[row + stride + w];
+                lights[row + w] = lit;
+            }
+        }
+        board.fromRows(lights);
+
+        // the presses may have cancelled out, a game which is already won is no game at all
+        if (board.isClear())
+            board.press(rand.nextInt(width), rand.nextInt(height));
+    }
+}
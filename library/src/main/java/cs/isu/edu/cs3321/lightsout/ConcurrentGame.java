@@ -0,0 +1,304 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.lightsout;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Thread-safe variant of {@link Game}, for games which are played from several threads at once. The board is held in
+ * an immutable snapshot which every change replaces with compare-and-set, so moves never block one another and a
+ * reader always sees a board, winner flag and version which belong together. A move on a {@link WideBoard} only
+ * copies the rows it touches into the next snapshot.
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public class ConcurrentGame {
+
+    private final AtomicReference<GameSnapshot> current;
+    private final BoardGenerator generator;
+    /**
+     * The snapshot installed by {@link #freeze()}, which no change may replace while it is current
+     */
+    private volatile GameSnapshot frozen;
+
+    /**
+     * Constructor
+     */
+    public ConcurrentGame() {
+        this(BoardGenerator.DEFAULT);
+    }
+
+    /**
+     * Constructs a game whose boards are produced by the provided generator
+     *
+     * @param generator Generator used for the initial board and for every reset
+     */
+    public ConcurrentGame(BoardGenerator generator) {
+        this(Constants.MAX_X, Constants.MAX_Y, generator);
+    }
+
+    /**
+     * Constructs a game on a board of the provided dimensions
+     *
+     * @param width  Number of columns in the board
+     * @param height Number of rows in the board
+     * @throws IllegalArgumentException if either dimension is below 1 or above {@link Constants#MAX_DIMENSION}
+     */
+    public ConcurrentGame(int width, int height) {
+        this(width, height, BoardGenerator.DEFAULT);
+    }
+
+    /**
+     * Constructs a game on a board of the provided dimensions, whose boards are produced by the provided generator
+     *
+     * @param width     Number of columns in the board
+     * @param height    Number of rows in the board
+     * @param generator Generator used for the initial board and for every reset
+     * @throws IllegalArgumentException if either dimension is below 1 or above {@link Constants#MAX_DIMENSION}
+     */
+    public ConcurrentGame(int width, int height, BoardGenerator generator) {
+        this.generator = generator;
+        this.current = new AtomicReference<>(new GameSnapshot(Board.create(width, height), false, 0));
+        reset();
+    }
+
+    /**
+     * Constructs a game which continues from the provided snapshot, such as one restored from storage, rather than
+     * from a new board
+     *
+     * @param initial   The state the game continues from
+     * @param generator Generator used for every reset
+     */
+    public ConcurrentGame(GameSnapshot initial, BoardGenerator generator) {
+        this.generator = generator;
+        this.current = new AtomicReference<>(initial);
+    }
+
+    /**
+     * Creates a copy of the current state of the game, in the form expected by the client
+     *
+     * @return The current game state
+     */
+    public GameState getState() {
+        return current.get().toState();
+    }
+
+    /**
+     * @return The current snapshot of the game
+     */
+    public GameSnapshot getSnapshot() {
+        return current.get();
+    }
+
+    /**
+     * Replaces the board of this game with the provided game state
+     *
+     * @param state The new state of the game
+     * @return The snapshot of the game after the change
+     * @throws UnavailableException if the game is frozen
+     */
+    public GameSnapshot setState(GameState state) {
+        GameSnapshot prev;
+        GameSnapshot next;
+        do {
+            prev = unfrozen();
+            Board board = prev.getBoard().copy();
+            board.fromArray(state.getBoard());
+            next = new GameSnapshot(board, state.isWinner(), prev.getVersion() + 1);
+        } while (!current.compareAndSet(prev, next));
+        return next;
+    }
+
+    /**
+     * @return The number of changes made to this game, which increases with every update, reset or replaced state
+     */
+    public long getVersion() {
+        return current.get().getVersion();
+    }
+
+    /**
+     * @return A copy of the current board
+     */
+    public Board getBoard() {
+        return current.get().getBoard().copy();
+    }
+
+    /**
+     * Updates the gameboard for a selection of the item at the coordinate x, y. The game is won once a move turns the
+     * last light off.
+     *
+     * @param x The column in the board, which was selected
+     * @param y The row in the board, which was selected
+     * @return The snapshot of the game immediately after this move
+     * @throws IndexOutOfBoundsException if x, y is not a location on the board
+     * @throws UnavailableException      if the game is frozen
+     */
+    public GameSnapshot update(int x, int y) {
+        GameSnapshot prev;
+        GameSnapshot next;
+        do {
+            prev = unfrozen();
+            Board board = prev.getBoard().pressed(x, y);
+            next = new GameSnapshot(board, board.isClear(), prev.getVersion() + 1);
+        } while (!current.compareAndSet(prev, next));
+        return next;
+    }
+
+    /**
+     * Applies a sequence of moves as a single change. The moves are pressed once onto an empty board of the same size,
+     * which is then XOR'ed into the current board, so a conflicting change only repeats the XOR.
+     *
+     * @param moves The selected cells, each an [x, y] pair
+     * @return The snapshot of the game immediately after the moves, one version after the snapshot they were applied to
+     * @throws IndexOutOfBoundsException if any selected cell is not on the board, in which case no move is applied
+     * @throws IllegalArgumentException  if any move is not an [x, y] pair
+     * @throws UnavailableException      if the game is frozen
+     */
+    public GameSnapshot update(int[][] moves) {
+        return apply(toggles(moves));
+    }
+
+    /**
+     * Builds the lights a sequence of moves toggles, by pressing every move on an empty board of the size of this game
+     *
+     * @param moves The selected cells, each an [x, y] pair
+     * @return Board whose lights are on where the moves toggle the board an odd number of times
+     * @throws IndexOutOfBoundsException if any selected cell is not on the board
+     * @throws IllegalArgumentException  if any move is not an [x, y] pair
+     */
+    public Board toggles(int[][] moves) {
+        GameSnapshot snapshot = current.get();
+        Board toggles = Board.create(snapshot.getWidth(), snapshot.getHeight());
+        for (int[] move : moves) {
+            if (move == null || move.length != 2)
+                throw new IllegalArgumentException("A move must be an [x, y] pair");
+            toggles.press(move[0], move[1]);
+        }
+        return toggles;
+    }
+
+    /**
+     * Toggles the lights which are on in the provided board as a single change
+     *
+     * @param toggles Board, with the dimensions of this game, whose lights are the ones to toggle
+     * @return The snapshot of the game immediately after the change
+     * @throws IllegalArgumentException if the dimensions of the board differ from those of this game
+     * @throws UnavailableException     if the game is frozen
+     */
+    public GameSnapshot apply(Board toggles) {
+        GameSnapshot prev;
+        GameSnapshot next;
+        do {
+            prev = unfrozen();
+            Board board = prev.getBoard().copy();
+            board.xor(toggles);
+            next = new GameSnapshot(board, board.isClear(), prev.getVersion() + 1);
+        } while (!current.compareAndSet(prev, next));
+        return next;
+    }
+
+    /**
+     * Resets the game board to a new board from the generator of this game
+     *
+     * @return The snapshot of the game after the reset
+     * @throws UnavailableException if the game is frozen
+     */
+    public GameSnapshot reset() {
+        Board fresh = current.get().getBoard().copy();
+        generator.fill(fresh);
+        return reset(fresh);
+    }
+
+    /**
+     * Resets the game to the provided board, such as one generated ahead of time
+     *
+     * @param fresh The new board, of the size of this game, which is no longer modified by the caller
+     * @return The snapshot of the game after the reset
+     * @throws IllegalArgumentException if the board is not of the size of this game
+     * @throws UnavailableException     if the game is frozen
+     */
+    public GameSnapshot reset(Board fresh) {
+        Board board = current.get().getBoard();
+        if (fresh.getWidth() != board.getWidth() || fresh.getHeight() != board.getHeight())
+            throw new IllegalArgumentException("Board is not " + board.getWidth() + "x" + board.getHeight());
+        GameSnapshot prev;
+        GameSnapshot next;
+        do {
+            prev = unfrozen();
+            next = new GameSnapshot(fresh, false, prev.getVersion() + 1);
+        } while (!current.compareAndSet(prev, next));
+        return next;
+    }
+
+    /**
+     * Stops every change to the game, such as while it is handed to another server. A change which was under way
+     * when the game froze fails to commit and is refused when it tries again, so every change either reaches the
+     * returned snapshot or is refused.
+     *
+     * @return The state of the game, which stays current until {@link #thaw()}
+     */
+    public GameSnapshot freeze() {
+        GameSnapshot prev;
+        GameSnapshot next;
+        do {
+            prev = current.get();
+            if (prev == frozen)
+                return prev;
+            // a distinct snapshot of the same state, so changes read before this one fail their compare-and-set
+            next = new GameSnapshot(prev.getBoard(), prev.isWinner(), prev.getVersion());
+            frozen = next;
+        } while (!current.compareAndSet(prev, next));
+        return next;
+    }
+
+    /**
+     * Allows changes to the game again after {@link #freeze()}
+     */
+    public void thaw() {
+        frozen = null;
+    }
+
+    /**
+     * @return True if changes to the game are refused
+     */
+    public boolean isFrozen() {
+        return current.get() == frozen;
+    }
+
+    /**
+     * Reads the current snapshot for a change
+     *
+     * @return The current snapshot
+     * @throws UnavailableException if the game is frozen
+     */
+    private GameSnapshot unfrozen() {
+        GameSnapshot snapshot = current.get();
+        if (snapshot == frozen)
+            throw new UnavailableException("Game is frozen, try again");
+        return snapshot;
+    }
+
+    /**
+     * Detects if the game board is in a winning state, in constant time as the board keeps count of its lights
+     *
+     * @return true if no value of the board is a 1, otherwise false
+     */
+    public boolean checkWinner() {
+        return current.get().getBoard().isClear();
+    }
+}
@@ -20,6 +20,9 @@ package cs.isu.edu.cs3321.lightsout;
  * Interface providing the constants used for the game and gamestate
  */
 public interface Constants {
+    // dimensions of the board when none are requested
     int MAX_X = 5;
     int MAX_Y = 5;
+    // largest number of columns or rows a board may have
+    int MAX_DIMENSION = 1024;
 }
@@ -0,0 +1,300 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.lightsout;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Produces boards whose minimal solution takes a requested number of presses, for boards which fit in a
+ * {@link PackedBoard}.
+ * <p>
+ * The presses producing a board are one member of a coset of the null space of the toggle matrix, and they form its
+ * minimal solution exactly when, for every press pattern z which leaves boards unchanged, at most half of the cells of
+ * z are pressed. Every subset of such a set of presses is a minimal solution as well. When the generator is created it
+ * walks the cells in random order a number of times, pressing each one which keeps the condition, and keeps the sets
+ * reached as seeds. A board of a given difficulty starts from that many cells of a seed holding at least that many,
+ * then moves the presses around by swapping a pressed cell for an unpressed one whenever the swap keeps the condition,
+ * so the number of presses is exact from the start and never has to be retried. The board is the sum of the toggle
+ * masks of the presses, and is never solved or tested afterwards.
+ * <p>
+ * The hardest difficulty offered is the largest set reached by the walks made when the generator is created.
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public final class DifficultyGenerator {
+
+    /**
+     * Number of walks made when the generator is created to find the hardest difficulty it can reach
+     */
+    private static final int PROBE_WALKS = 256;
+    /**
+     * Number of swaps tried per cell of the board when generating a board
+     */
+    private static final int SWAPS_PER_CELL = 4;
+
+    @Getter
+    private final int width;
+    @Getter
+    private final int height;
+    /**
+     * Number of presses of the minimal solution of the hardest boards produced
+     */
+    @Getter
+    private final int maxDifficulty;
+    private final long[] masks;
+    /**
+     * Every press pattern which leaves boards unchanged, other than pressing nothing
+     */
+    private final long[] quiet;
+    /**
+     * Largest number of cells of each quiet pattern which may be pressed
+     */
+    private final int[] limits;
+    /**
+     * Presses reached by the walks made when the generator was created, largest first
+     */
+    private final long[] seeds;
+    /**
+     * Number of seeds holding at least each number of presses
+     */
+    private final int[] reach;
+    private final Supplier<? extends Random> random;
+
+    /**
+     * Constructor
+     *
+     * @param width  Number of columns of the boards
+     * @param height Number of rows of the boards
+     * @param random Source of the random generator to use, called on the thread generating the board so that each
+     *               thread can use its own generator
+     * @throws IllegalArgumentException if the boards do not fit in a {@link PackedBoard}, or the null space of their
+     *                                  toggle matrix has more than {@link Solver#MAX_NULLITY} dimensions
+     */
+    public DifficultyGenerator(int width, int height, Supplier<? extends Random> random) {
+        if (width <= 0 || height <= 0 || width * height > PackedBoard.MAX_CELLS)
+            throw new IllegalArgumentException(
+                    "Difficulty is limited to boards of " + PackedBoard.MAX_CELLS + " cells");
+        Solver solver = Solver.forSize(width, height);
+        if (solver.nullity() > Solver.MAX_NULLITY)
+            throw new IllegalArgumentException("Difficulty is not supported for " + width + "x" + height + " boards");
+        this.width = width;
+        this.height = height;
+        this.random = random;
+
+        PackedBoard board = new PackedBoard(width, height);
+        masks = new long[width * height];
+        for (int i = 0; i < masks.length; i++) {
+            masks[i] = board.toggleMask(i % width, i / width);
+        }
+
+        long[] basis = new long[solver.nullity()];
+        for (int i = 0; i < basis.length; i++) {
+            basis[i] = solver.nullPattern(i).toBits();
+        }
+        quiet = new long[(1 << basis.length) - 1];
+        limits = new int[quiet.length];
+        long pattern = 0;
+        for (int g = 1; g <= quiet.length; g++) {
+            pattern ^= basis[Integer.numberOfTrailingZeros(g)];
+            quiet[g - 1] = pattern;
+            limits[g - 1] = Long.bitCount(pattern) / 2;
+        }
+
+        Random probe = new Random(width * 31L + height);
+        long[] walks = new long[PROBE_WALKS];
+        for (int i = 0; i < walks.length; i++) {
+            walks[i] = walk(probe);
+        }
+        seeds = sortBySize(walks);
+        maxDifficulty = Long.bitCount(seeds[0]);
+        reach = new int[maxDifficulty + 1];
+        for (long seed : seeds) {
+            for (int k = Long.bitCount(seed); k >= 0; k--) {
+                reach[k]++;
+            }
+        }
+    }
+
+    /**
+     * Generates a board whose minimal solution takes exactly the provided number of presses
+     *
+     * @param difficulty The number of presses, between 1 and {@link #getMaxDifficulty()}
+     * @return The lights of the board, packed as in {@link PackedBoard#getBits()}
+     * @throws IllegalArgumentException if the difficulty is out of range
+     */
+    public long generate(int difficulty) {
+        if (difficulty < 1 || difficulty > maxDifficulty)
+            throw new IllegalArgumentException("Difficulty must be between 1 and " + maxDifficulty);
+        Random rand = random.get();
+        long seed = seeds[rand.nextInt(reach[difficulty])];
+        int[] pressed = cells(seed);
+        for (int i = 0; i < difficulty; i++) {
+            int j = i + rand.nextInt(pressed.length - i);
+            int cell = pressed[j];
+            pressed[j] = pressed[i];
+            pressed[i] = cell;
+        }
+        pressed = Arrays.copyOf(pressed, difficulty);
+        int[] free = new int[masks.length - difficulty];
+        long presses = 0;
+        for (int cell : pressed) {
+            presses |= 1L << cell;
+        }
+        for (int cell = 0, f = 0; cell < masks.length; cell++) {
+            if ((presses & 1L << cell) == 0)
+                free[f++] = cell;
+        }
+
+        int[] counts = new int[quiet.length];
+        for (int q = 0; q < quiet.length; q++) {
+            counts[q] = Long.bitCount(quiet[q] & presses);
+        }
+        for (int swap = free.length == 0 ? 0 : SWAPS_PER_CELL * masks.length; swap > 0; swap--) {
+            int p = rand.nextInt(pressed.length);
+            int f = rand.nextInt(free.length);
+            long out = 1L << pressed[p];
+            long in = 1L << free[f];
+            if (!allows(counts, in, out))
+                continue;
+            for (int q = 0; q < quiet.length; q++) {
+                if ((quiet[q] & out) != 0)
+                    counts[q]--;
+                if ((quiet[q] & in) != 0)
+                    counts[q]++;
+            }
+            presses ^= out | in;
+            int cell = pressed[p];
+            pressed[p] = free[f];
+            free[f] = cell;
+        }
+
+        long lights = 0;
+        for (long left = presses; left != 0; left &= left - 1) {
+            lights ^= masks[Long.numberOfTrailingZeros(left)];
+        }
+        return lights;
+    }
+
+    /**
+     * Generates a board whose minimal solution takes a number of presses in a band, each number being equally likely
+     *
+     * @param min The fewest presses, at least 1
+     * @param max The most presses, at most {@link #getMaxDifficulty()}
+     * @return The lights of the board, packed as in {@link PackedBoard#getBits()}
+     * @throws IllegalArgumentException if the band is empty or out of range
+     */
+    public long generate(int min, int max) {
+        if (min > max)
+            throw new IllegalArgumentException("Difficulty band " + min + "-" + max + " is empty");
+        return generate(min + random.get().nextInt(max - min + 1));
+    }
+
+    /**
+     * Replaces the lights of a board with a board of the provided difficulty
+     *
+     * @param board      The board to fill, of the size of this generator
+     * @param difficulty The number of presses of the minimal solution of the board
+     * @throws IllegalArgumentException if the board is not of the size of this generator, or the difficulty is out of
+     *                                  range
+     */
+    public void fill(Board board, int difficulty) {
+        if (board.getWidth() != width || board.getHeight() != height)
+            throw new IllegalArgumentException("Generator is for " + width + "x" + height + " boards");
+        ((PackedBoard) board).setBits(generate(difficulty));
+    }
+
+    /**
+     * Tells whether swapping one pressed cell for an unpressed one keeps the presses the minimal solution of their
+     * board
+     *
+     * @param counts The number of pressed cells of each quiet pattern
+     * @param in     The bit of the cell to press
+     * @param out    The bit of the cell to release
+     * @return Whether no quiet pattern would have more than its limit of cells pressed
+     */
+    private boolean allows(int[] counts, long in, long out) {
+        for (int q = 0; q < quiet.length; q++) {
+            if ((quiet[q] & in) != 0 && (quiet[q] & out) == 0 && counts[q] >= limits[q])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Walks the cells in random order, pressing every cell which keeps the presses the minimal solution of their
+     * board
+     *
+     * @param rand The random generator choosing the order of the cells
+     * @return The presses, a minimal solution to which no cell can be added
+     */
+    private long walk(Random rand) {
+        int[] order = new int[masks.length];
+        for (int i = 0; i < order.length; i++) {
+            int j = rand.nextInt(i + 1);
+            order[i] = order[j];
+            order[j] = i;
+        }
+
+        int[] counts = new int[quiet.length];
+        long presses = 0;
+        for (int cell : order) {
+            long bit = 1L << cell;
+            if (!allows(counts, bit, 0))
+                continue;
+            for (int q = 0; q < quiet.length; q++) {
+                if ((quiet[q] & bit) != 0)
+                    counts[q]++;
+            }
+            presses |= bit;
+        }
+        return presses;
+    }
+
+    /**
+     * Lists the cells of a set of presses
+     *
+     * @param presses The presses, one bit per cell
+     * @return The index of each pressed cell, in increasing order
+     */
+    private static int[] cells(long presses) {
+        int[] cells = new int[Long.bitCount(presses)];
+        int i = 0;
+        for (long left = presses; left != 0; left &= left - 1) {
+            cells[i++] = Long.numberOfTrailingZeros(left);
+        }
+        return cells;
+    }
+
+    /**
+     * Sorts sets of presses from the most to the fewest presses
+     *
+     * @param sets The sets of presses, one bit per cell
+     * @return A new array of the sets, largest first
+     */
+    private static long[] sortBySize(long[] sets) {
+        return Arrays.stream(sets)
+                .boxed()
+                .sorted((a, b) -> Long.bitCount(b) - Long.bitCount(a))
+                .mapToLong(Long::longValue)
+                .toArray();
+    }
+}
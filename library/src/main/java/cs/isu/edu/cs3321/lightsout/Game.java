@@ -16,90 +16,125 @@
  */
 package cs.isu.edu.cs3321.lightsout;
 
-import com.google.common.collect.Lists;
-import lombok.Getter;
-import lombok.Setter;
-
-import java.util.List;
-import java.util.Random;
-
-import static cs.isu.edu.cs3321.lightsout.Constants.MAX_X;
-import static cs.isu.edu.cs3321.lightsout.Constants.MAX_Y;
-
 /**
- * Simple class implementing the rules for the LightsOut Game
+ * Simple class implementing the rules for the LightsOut Game. The board is kept bit-packed, in a {@link PackedBoard} for
+ * boards of up to 64 cells, so that a move is a single XOR of a precomputed mask and the winner check is a comparison
+ * against zero, or in a {@link WideBoard} for larger boards.
  *
  * @author Isaac D. Griffith
  * @version 1.0.0
  */
 public class Game {
 
-    @Getter
-    @Setter
-    private GameState state;
+    private final Board board;
+    private final BoardGenerator generator;
+    private boolean winner;
+    private long version;
 
     /**
      * Constructor
      */
     public Game() {
-        state = new GameState();
-        reset();
+        this(BoardGenerator.DEFAULT);
     }
 
     /**
-     * Updates the gameboard for a selection of the item at the coordinate x, y
+     * Constructs a game whose boards are produced by the provided generator
      *
-     * @param x The column in the board, which was selected
-     * @param y The row in the board, which was selected
+     * @param generator Generator used for the initial board and for every reset
      */
-    public void update(int x, int y) {
-        List<Integer> xChange = Lists.newArrayList(-1, 1);
-        List<Integer> yChange = Lists.newArrayList(-1, 1);
+    public Game(BoardGenerator generator) {
+        this(Constants.MAX_X, Constants.MAX_Y, generator);
+    }
 
-        for (int xVal : xChange) {
-            try {
-                state.flip(x + xVal, y);
-            } catch (ArrayIndexOutOfBoundsException ex) {
+    /**
+     * Constructs a game on a board of the provided dimensions
+     *
+     * @param width  Number of columns in the board
+     * @param height Number of rows in the board
+     * @throws IllegalArgumentException if either dimension is below 1 or above {@link Constants#MAX_DIMENSION}
+     */
+    public Game(int width, int height) {
+        this(width, height, BoardGenerator.DEFAULT);
+    }
 
-            }
-        }
-        for (int yVal : yChange) {
-            try {
-                state.flip(x, y + yVal);
-            } catch (ArrayIndexOutOfBoundsException ex) {
+    /**
+     * Constructs a game on a board of the provided dimensions, whose boards are produced by the provided generator
+     *
+     * @param width     Number of columns in the board
+     * @param height    Number of rows in the board
+     * @param generator Generator used for the initial board and for every reset
+     * @throws IllegalArgumentException if either dimension is below 1 or above {@link Constants#MAX_DIMENSION}
+     */
+    public Game(int width, int height, BoardGenerator generator) {
+        this.board = Board.create(width, height);
+        this.generator = generator;
+        reset();
+    }
 
-            }
-        }
-        state.flip(x, y);
+    /**
+     * Creates a snapshot of the current state of the game, in the form expected by the client
+     *
+     * @return The current game state
+     */
+    public GameState getState() {
+        return new GameState(board.toArray(), winner, version);
     }
 
     /**
-     * Resets the game board to a random state
+     * Replaces the board of this game with the provided game state
+     *
+     * @param state The new state of the game
      */
-    public void reset() {
-        Random rand = new Random();
+    public void setState(GameState state) {
+        board.fromArray(state.getBoard());
+        winner = state.isWinner();
+        version++;
+    }
+
+    /**
+     * @return A copy of the current board
+     */
+    public Board getBoard() {
+        return board.copy();
+    }
+
+    /**
+     * @return The number of changes made to this game, which increases with every update, reset or replaced state
+     */
+    public long getVersion() {
+        return version;
+    }
 
-        for (int i = 0; i < MAX_X; i++) {
-            for (int j = 0; j < MAX_Y; j++) {
-                state.set(i, j, rand.nextBoolean() ? 1 : 0);
-            }
-        }
+    /**
+     * Updates the gameboard for a selection of the item at the coordinate x, y, and marks the game won if the move
+     * turned the last light off
+     *
+     * @param x The column in the board, which was selected
+     * @param y The row in the board, which was selected
+     * @throws IndexOutOfBoundsException if x, y is not a location on the board
+     */
+    public void update(int x, int y) {
+        board.press(x, y);
+        winner = board.isClear();
+        version++;
+    }
 
-        state.setWinner(false);
+    /**
+     * Resets the game board to a new board from the generator of this game
+     */
+    public void reset() {
+        generator.fill(board);
+        winner = false;
+        version++;
     }
 
     /**
-     * Detects if the game board is in a winning state
+     * Detects if the game board is in a winning state, in constant time as the board keeps count of its lights
      *
-     * @return true if no value of the board is a 1 or not, otherwise falase
+     * @return true if no value of the board is a 1, otherwise false
      */
     public boolean checkWinner() {
-        for (int i = 0; i < MAX_X; i++) {
-            for (int j = 0; j < MAX_Y; j++) {
-                if (state.get(i, j) == 1)
-                    return false;
-            }
-        }
-        return true;
+        return board.isClear();
     }
 }
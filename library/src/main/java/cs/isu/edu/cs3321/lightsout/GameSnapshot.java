@@ -0,0 +1,115 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.lightsout;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Immutable state of a {@link ConcurrentGame} at one version. The board is never modified once the snapshot is
+ * published, so it can be read without copying, and is only turned into a {@link GameState} when one is needed.
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public final class GameSnapshot {
+
+    @Getter(AccessLevel.PACKAGE)
+    private final Board board;
+    @Getter
+    private final boolean winner;
+    @Getter
+    private final long version;
+
+    /**
+     * Constructor
+     *
+     * @param board   The board, which must not be changed afterwards
+     * @param winner  Whether the game has been won
+     * @param version Number of changes made to the game before it reached this state
+     */
+    GameSnapshot(Board board, boolean winner, long version) {
+        this.board = board;
+        this.winner = winner;
+        this.version = version;
+    }
+
+    /**
+     * Creates a snapshot of a board, such as one restored from storage
+     *
+     * @param board   The board, which is copied
+     * @param winner  Whether the game has been won
+     * @param version Number of changes made to the game before it reached this state
+     * @return The snapshot
+     */
+    public static GameSnapshot of(Board board, boolean winner, long version) {
+        return new GameSnapshot(board.copy(), winner, version);
+    }
+
+    /**
+     * @return Number of columns in the board
+     */
+    public int getWidth() {
+        return board.getWidth();
+    }
+
+    /**
+     * @return Number of rows in the board
+     */
+    public int getHeight() {
+        return board.getHeight();
+    }
+
+    /**
+     * Returns the value at the coordinate x, y
+     *
+     * @param x The column of the value to retrieve
+     * @param y The row of the value to retrieve
+     * @return 1 if the light is on, otherwise 0
+     */
+    public int get(int x, int y) {
+        return board.get(x, y);
+    }
+
+    /**
+     * @return A copy of the board, which may be changed freely
+     */
+    public Board copyBoard() {
+        return board.copy();
+    }
+
+    /**
+     * @return True if every light on the board is off
+     */
+    public boolean isClear() {
+        return board.isClear();
+    }
+
+    /**
+     * @return The lights of the board as row aligned words
+     */
+    public long[] toRows() {
+        return board.toRows();
+    }
+
+    /**
+     * @return The state of the game in the form expected by the client
+     */
+    public GameState toState() {
+        return new GameState(board.toArray(), winner, version);
+    }
+}
@@ -37,6 +37,9 @@ public class GameState {
     @Getter
     @Setter
     private boolean winner;
+    @Getter
+    @Setter
+    private long version;
 
     /**
      * Constructor
@@ -46,6 +49,19 @@ public class GameState {
         winner = false;
     }
 
+    /**
+     * Constructs a game state from an existing board
+     *
+     * @param board   The values of the board, indexed as [y][x]
+     * @param winner  Whether the board is in a winning state
+     * @param version Number of changes made to the game before it reached this state
+     */
+    GameState(int[][] board, boolean winner, long version) {
+        this.board = board;
+        this.winner = winner;
+        this.version = version;
+    }
+
     /**
      * Flips the value at the coordinate x,y from 1 to 0 and vice versa
      *
@@ -59,7 +75,7 @@ public class GameState {
     }
 
     /**
-     * Sets the value at the coordinate x, y to be the provided value
+     * Sets the value at the coordinate x, y to be the provided value, ignoring coordinates outside the board
      *
      * @param y   The row of the value to be set
      * @param x   The column of the value to be set
@@ -68,7 +84,7 @@ public class GameState {
     void set(int y, int x, int val) {
         if (val > 1) val = 1;
         if (val < 0) val = 0;
-        //if (!validLocation(x, y)) return;
+        if (!validLocation(x, y)) return;
         board[y][x] = val;
     }
 
@@ -88,9 +104,9 @@ public class GameState {
      *
      * @param x the column to be tested
      * @param y the row to be tested
-     * @return True if the column and row are within bounds
+     * @return True if the column and row are within the bounds of this board
      */
     boolean validLocation(int x, int y) {
-        return x >= 0 && x < MAX_X && y >= 0 && y < MAX_Y;
+        return y >= 0 && y < board.length && x >= 0 && x < board[y].length;
     }
 }
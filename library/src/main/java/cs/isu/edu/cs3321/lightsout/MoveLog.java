@@ -0,0 +1,356 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.lightsout;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * The moves made in a game since its board was last replaced, kept as steps of one or more pressed cells. Each cell is
+ * packed into an int as {@code y * width + x}, and the cells of every step are stored back to back in a growable int
+ * array, with a second array marking where each step ends, so a move costs four bytes.
+ * <p>
+ * Since pressing a cell twice leaves the board as it was, undoing a step is pressing its cells again, and redoing it is
+ * the same, so both take constant time. The board after any step is found by replaying the steps after the nearest
+ * checkpoint before it, a copy of the board taken every {@code interval} steps, so at most {@code interval} steps are
+ * replayed.
+ * <p>
+ * The log holds at most {@code maxBytes} of cells, step ends and checkpoints. Once a step takes it over, the oldest
+ * steps are dropped, up to the next checkpoint at a time, and can no longer be undone. Steps are numbered from the
+ * oldest step kept, {@link #getDropped()} counts those dropped before it.
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public final class MoveLog {
+
+    /**
+     * Number of steps between checkpoints unless set otherwise
+     */
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 64;
+
+    /**
+     * Smallest budget given by {@link #budget(int, int)}, which keeps the last 64 to about 230 single
+     * moves of a small board
+     */
+    public static final long MIN_BUDGET = 2048;
+
+    @Getter
+    private final int width;
+    @Getter
+    private final int height;
+    private final int interval;
+    @Getter
+    private final long maxBytes;
+    private final long checkpointBytes;
+    private int[] cells = new int[16];
+    private int cellCount;
+    private int[] ends = new int[16];
+    /**
+     * Number of steps recorded, including those undone which may be redone
+     */
+    @Getter
+    private int steps;
+    /**
+     * Number of steps applied to the board, the rest have been undone
+     */
+    @Getter
+    private int position;
+    /**
+     * Number of the oldest steps dropped to stay within the budget since the board was last replaced
+     */
+    @Getter
+    private long dropped;
+    private Board[] checkpoints = new Board[4];
+    private int[] checkpointSteps = new int[4];
+    private int checkpointCount;
+    /**
+     * Version of the game when its board was last replaced, steps of earlier versions are ignored
+     */
+    @Getter
+    private long baseVersion;
+
+    /**
+     * Constructor, with the budget given by {@link #budget(int, int)}
+     *
+     * @param initial  The board the moves start from, which is copied
+     * @param version  The version of the game with that board
+     * @param interval Number of steps between checkpoints
+     */
+    public MoveLog(Board initial, long version, int interval) {
+        this(initial, version, interval, budget(initial.getWidth(), initial.getHeight()));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param initial  The board the moves start from, which is copied
+     * @param version  The version of the game with that board
+     * @param interval Number of steps between checkpoints
+     * @param maxBytes Most bytes the log holds before dropping its oldest steps, at least {@link #MIN_BUDGET} and two
+     *                 checkpoints
+     * @throws IllegalArgumentException if the interval is not positive or the budget is too small
+     */
+    public MoveLog(Board initial, long version, int interval, long maxBytes) {
+        if (interval < 1)
+            throw new IllegalArgumentException("The checkpoint interval must be positive");
+        this.width = initial.getWidth();
+        this.height = initial.getHeight();
+        this.interval = interval;
+        this.checkpointBytes = checkpointBytes(width, height);
+        if (maxBytes < Math.max(MIN_BUDGET, 2 * checkpointBytes))
+            throw new IllegalArgumentException(
+                    "The budget must be at least " + MIN_BUDGET + " bytes and two checkpoints");
+        this.maxBytes = maxBytes;
+        start(initial, version);
+    }
+
+    /**
+     * The budget of the log of a game unless set otherwise, room for four checkpoints and no less than
+     * {@link #MIN_BUDGET}
+     *
+     * @param width  Number of columns of the board
+     * @param height Number of rows of the board
+     * @return The budget in bytes
+     */
+    public static long budget(int width, int height) {
+        return Math.max(MIN_BUDGET, 4 * checkpointBytes(width, height));
+    }
+
+    /**
+     * Estimates the heap held by one checkpoint
+     *
+     * @param width  Number of columns of the board
+     * @param height Number of rows of the board
+     * @return The approximate footprint of a board of that size, in bytes
+     */
+    static long checkpointBytes(int width, int height) {
+        if ((long) width * height <= Long.SIZE)
+            return 32;
+        return 16 + height * (24L + 8L * ((width + 63) / 64));
+    }
+
+    /**
+     * Forgets every step and starts again from a new board, such as after a reset
+     *
+     * @param initial The board the moves start from, which is copied
+     * @param version The version of the game with that board
+     */
+    public void start(Board initial, long version) {
+        Arrays.fill(checkpoints, null);
+        checkpoints[0] = initial.copy();
+        checkpointSteps[0] = 0;
+        checkpointCount = 1;
+        if (cells.length > 64)
+            cells = new int[16];
+        if (ends.length > 64)
+            ends = new int[16];
+        cellCount = 0;
+        steps = 0;
+        position = 0;
+        dropped = 0;
+        baseVersion = version;
+    }
+
+    /**
+     * Records the selection of a single cell. Any steps which were undone can no longer be redone.
+     *
+     * @param x       The selected column
+     * @param y       The selected row
+     * @param version The version of the game the move produced
+     * @return False if the move was made before the board was last replaced, and so was not recorded
+     */
+    public boolean record(int x, int y, long version) {
+        if (version <= baseVersion)
+            return false;
+        truncate();
+        if (cellCount == cells.length)
+            cells = Arrays.copyOf(cells, cellCount * 2);
+        cells[cellCount++] = y * width + x;
+        endStep();
+        return true;
+    }
+
+    /**
+     * Records several selections applied as one step. Any steps which were undone can no longer be redone.
+     *
+     * @param moves   The selected cells, each an [x, y] pair
+     * @param version The version of the game the moves produced
+     * @return False if the moves were made before the board was last replaced, and so were not recorded
+     */
+    public boolean record(int[][] moves, long version) {
+        if (version <= baseVersion || moves.length == 0)
+            return false;
+        truncate();
+        if (cellCount + moves.length > cells.length)
+            cells = Arrays.copyOf(cells, Math.max(cells.length * 2, cellCount + moves.length));
+        for (int[] move : moves) {
+            cells[cellCount++] = move[1] * width + move[0];
+        }
+        endStep();
+        return true;
+    }
+
+    /**
+     * Steps back over the last applied step
+     *
+     * @return The cells, as [x, y] pairs, which must be pressed again to undo the step, or null if there is none
+     */
+    public int[][] undo() {
+        if (position == 0)
+            return null;
+        return step(--position);
+    }
+
+    /**
+     * Steps forward over the last undone step
+     *
+     * @return The cells, as [x, y] pairs, which must be pressed to redo the step, or null if there is none
+     */
+    public int[][] redo() {
+        if (position == steps)
+            return null;
+        return step(position++);
+    }
+
+    /**
+     * Returns the cells pressed by a step
+     *
+     * @param index The index of the step, below {@link #getSteps()}
+     * @return The cells, each an [x, y] pair
+     */
+    public int[][] step(int index) {
+        if (index < 0 || index >= steps)
+            throw new IndexOutOfBoundsException("Step " + index + " is not in the log");
+        int from = index == 0 ? 0 : ends[index - 1];
+        int[][] moves = new int[ends[index] - from][];
+        for (int i = 0; i < moves.length; i++) {
+            int cell = cells[from + i];
+            moves[i] = new int[]{cell % width, cell / width};
+        }
+        return moves;
+    }
+
+    /**
+     * Builds the board after a number of steps, replaying at most one checkpoint interval of steps
+     *
+     * @param step The number of steps, between 0 and {@link #getSteps()}
+     * @return A new board
+     */
+    public Board stateAt(int step) {
+        if (step < 0 || step > steps)
+            throw new IndexOutOfBoundsException("Step " + step + " is not in the log");
+        int checkpoint = checkpointCount - 1;
+        while (checkpointSteps[checkpoint] > step) {
+            checkpoint--;
+        }
+        Board board = checkpoints[checkpoint].copy();
+        int from = checkpointSteps[checkpoint] == 0 ? 0 : ends[checkpointSteps[checkpoint] - 1];
+        int to = step == 0 ? 0 : ends[step - 1];
+        for (int i = from; i < to; i++) {
+            board.press(cells[i] % width, cells[i] / width);
+        }
+        return board;
+    }
+
+    /**
+     * @return The approximate heap held by the steps and checkpoints of this log, in bytes
+     */
+    public long bytes() {
+        return 4L * (cells.length + ends.length + checkpointSteps.length) + 8L * checkpoints.length
+                + checkpointCount * checkpointBytes;
+    }
+
+    /**
+     * Drops the steps which were undone, as a new step is about to be recorded
+     */
+    private void truncate() {
+        if (position == steps)
+            return;
+        steps = position;
+        cellCount = steps == 0 ? 0 : ends[steps - 1];
+        int keep = checkpointCount;
+        while (checkpointSteps[keep - 1] > steps) {
+            keep--;
+        }
+        Arrays.fill(checkpoints, keep, checkpointCount, null);
+        checkpointCount = keep;
+    }
+
+    /**
+     * Closes the step made of the cells added since the last one, taking a checkpoint if it completes an interval, and
+     * drops the oldest steps if the log is over its budget
+     */
+    private void endStep() {
+        if (steps == ends.length)
+            ends = Arrays.copyOf(ends, steps * 2);
+        ends[steps++] = cellCount;
+        position = steps;
+        if (steps - checkpointSteps[checkpointCount - 1] >= interval) {
+            Board checkpoint = stateAt(steps);
+            if (checkpointCount == checkpoints.length) {
+                checkpoints = Arrays.copyOf(checkpoints, checkpointCount * 2);
+                checkpointSteps = Arrays.copyOf(checkpointSteps, checkpointCount * 2);
+            }
+            checkpointSteps[checkpointCount] = steps;
+            checkpoints[checkpointCount++] = checkpoint;
+        }
+        while (bytes() > maxBytes && position > 0) {
+            drop(checkpointCount > 1 && checkpointSteps[1] <= position ? checkpointSteps[1] : position);
+        }
+    }
+
+    /**
+     * Forgets the oldest steps, starting the log from the board after them
+     *
+     * @param count Number of steps to drop, at most {@link #getPosition()}
+     */
+    private void drop(int count) {
+        Board first = stateAt(count);
+        int from = ends[count - 1];
+        int keptCells = cellCount - from;
+        int keptSteps = steps - count;
+        cells = Arrays.copyOfRange(cells, from, from + Math.max(16, keptCells + keptCells / 2));
+        int[] keptEnds = new int[Math.max(16, keptSteps + keptSteps / 2)];
+        for (int i = 0; i < keptSteps; i++) {
+            keptEnds[i] = ends[count + i] - from;
+        }
+        ends = keptEnds;
+
+        int skip = 1;
+        while (skip < checkpointCount && checkpointSteps[skip] <= count) {
+            skip++;
+        }
+        int keptCheckpoints = 1 + checkpointCount - skip;
+        Board[] boards = new Board[Math.max(4, keptCheckpoints)];
+        int[] boardSteps = new int[boards.length];
+        boards[0] = first;
+        for (int i = skip; i < checkpointCount; i++) {
+            boards[i - skip + 1] = checkpoints[i];
+            boardSteps[i - skip + 1] = checkpointSteps[i] - count;
+        }
+        checkpoints = boards;
+        checkpointSteps = boardSteps;
+        checkpointCount = keptCheckpoints;
+
+        cellCount = keptCells;
+        steps = keptSteps;
+        position -= count;
+        dropped += count;
+    }
+}
@@ -0,0 +1,264 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.lightsout;
+
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Board which packs every cell of the game into the bits of a single long. The cell at column x and
+ * row y is stored in bit {@code y * width + x}. Pressing a cell XORs in a toggle mask which is precomputed once per
+ * board size, so a move never allocates and never has to deal with the edges of the board.
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public final class PackedBoard extends Board {
+
+    /**
+     * Largest number of cells which can be packed into a single long
+     */
+    public static final int MAX_CELLS = Long.SIZE;
+
+    private static final Map<Integer, long[]> MASKS = new ConcurrentHashMap<>();
+
+    @Getter
+    private final int width;
+    @Getter
+    private final int height;
+    private final long[] masks;
+    private long bits;
+
+    /**
+     * Constructs a new board, with all lights off, using the default dimensions
+     */
+    public PackedBoard() {
+        this(Constants.MAX_X, Constants.MAX_Y);
+    }
+
+    /**
+     * Constructs a new board, with all lights off, of the provided dimensions
+     *
+     * @param width  Number of columns in the board
+     * @param height Number of rows in the board
+     * @throws IllegalArgumentException if the board is empty or has more than {@link #MAX_CELLS} cells
+     */
+    public PackedBoard(int width, int height) {
+        if (width <= 0 || height <= 0 || width * height > MAX_CELLS)
+            throw new IllegalArgumentException("A packed board cannot be " + width + "x" + height);
+        this.width = width;
+        this.height = height;
+        this.masks = MASKS.computeIfAbsent(width << 16 | height, key -> toggleMasks(width, height));
+    }
+
+    /**
+     * Copy constructor
+     *
+     * @param other The board to copy
+     */
+    private PackedBoard(PackedBoard other) {
+        this.width = other.width;
+        this.height = other.height;
+        this.masks = other.masks;
+        this.bits = other.bits;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PackedBoard copy() {
+        return new PackedBoard(this);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void press(int x, int y) {
+        checkLocation(x, y);
+        bits ^= masks[y * width + x];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    PackedBoard pressed(int x, int y) {
+        PackedBoard next = copy();
+        next.press(x, y);
+        return next;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flip(int x, int y) {
+        bits ^= 1L << index(x, y);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int get(int x, int y) {
+        return (int) (bits >>> index(x, y)) & 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void set(int x, int y, int val) {
+        long bit = 1L << index(x, y);
+        if (val > 0) bits |= bit;
+        else bits &= ~bit;
+    }
+
+    /**
+     * @return The packed cells of this board, bit {@code y * width + x} holding the cell at x, y
+     */
+    public long getBits() {
+        return bits;
+    }
+
+    /**
+     * Replaces every cell of this board with the provided packed cells
+     *
+     * @param bits The new packed cells, bits beyond the last cell are discarded
+     */
+    public void setBits(long bits) {
+        this.bits = bits & cellMask();
+    }
+
+    /**
+     * Returns the precomputed toggle mask for the cell at x, y
+     *
+     * @param x The column of the cell
+     * @param y The row of the cell
+     * @return The mask which must be XOR'ed into the board when the cell at x, y is selected
+     */
+    public long toggleMask(int x, int y) {
+        return masks[index(x, y)];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void xor(Board other) {
+        checkDimensions(other);
+        bits ^= ((PackedBoard) other).bits;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isClear() {
+        return bits == 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int litCount() {
+        return Long.bitCount(bits);
+    }
+
+    /**
+     * @return A mask with one bit set for every cell on this board
+     */
+    public long cellMask() {
+        return cells() == MAX_CELLS ? -1L : (1L << cells()) - 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long[] toRows() {
+        long[] rows = new long[height];
+        long rowMask = width == Long.SIZE ? -1L : (1L << width) - 1;
+        long rest = bits;
+        for (int y = 0; y < height; y++) {
+            rows[y] = rest & rowMask;
+            rest = width == Long.SIZE ? 0 : rest >>> width;
+        }
+        return rows;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void fromRows(long[] rows) {
+        long rowMask = width == Long.SIZE ? -1L : (1L << width) - 1;
+        long packed = 0;
+        for (int y = height - 1; y >= 0; y--) {
+            packed = (width == Long.SIZE ? 0 : packed << width) | rows[y] & rowMask;
+        }
+        bits = packed;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[][] toArray() {
+        int[][] board = new int[height][width];
+        long rest = bits;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                board[y][x] = (int) rest & 1;
+                rest >>>= 1;
+            }
+        }
+        return board;
+    }
+
+    private int index(int x, int y) {
+        checkLocation(x, y);
+        return y * width + x;
+    }
+
+    /**
+     * Precomputes the toggle mask of every cell for a board of the provided dimensions
+     *
+     * @param width  Number of columns
+     * @param height Number of rows
+     * @return Array of masks indexed by {@code y * width + x}
+     */
+    private static long[] toggleMasks(int width, int height) {
+        long[] masks = new long[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                long mask = 1L << (y * width + x);
+                if (x > 0) mask |= 1L << (y * width + x - 1);
+                if (x < width - 1) mask |= 1L << (y * width + x + 1);
+                if (y > 0) mask |= 1L << ((y - 1) * width + x);
+                if (y < height - 1) mask |= 1L << ((y + 1) * width + x);
+                masks[y * width + x] = mask;
+            }
+        }
+        return masks;
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.lightsout;
+
+import lombok.Getter;
+
+/**
+ * The answer the {@link Solver} gives for a board: whether it can be cleared at all and, if so, which cells to press.
+ * The presses are kept as a bitset with one row of {@code ceil(width / 64)} words per board row.
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public final class Solution {
+
+    @Getter
+    private final int width;
+    @Getter
+    private final int height;
+    @Getter
+    private final boolean solvable;
+    private final long[] presses;
+    private final int stride;
+
+    /**
+     * Constructor
+     *
+     * @param width    Number of columns of the solved board
+     * @param height   Number of rows of the solved board
+     * @param solvable Whether the board can be cleared
+     * @param presses  Cells to press, as row aligned words, or null if the board cannot be cleared
+     */
+    Solution(int width, int height, boolean solvable, long[] presses) {
+        this.width = width;
+        this.height = height;
+        this.solvable = solvable;
+        this.presses = presses;
+        this.stride = (width + 63) >>> 6;
+    }
+
+    /**
+     * Creates the solution of a board which cannot be cleared
+     *
+     * @param width  Number of columns of the board
+     * @param height Number of rows of the board
+     * @return A solution with no presses
+     */
+    static Solution unsolvable(int width, int height) {
+        return new Solution(width, height, false, null);
+    }
+
+    /**
+     * @return The number of cells which must be pressed, or -1 if the board cannot be cleared
+     */
+    public int getPressCount() {
+        if (!solvable)
+            return -1;
+        int count = 0;
+        for (long word : presses) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Tests whether a cell is part of this solution
+     *
+     * @param x The column of the cell
+     * @param y The row of the cell
+     * @return True if the cell at x, y must be pressed
+     */
+    public boolean isPressed(int x, int y) {
+        return solvable && (presses[y * stride + (x >>> 6)] >>> x & 1) != 0;
+    }
+
+    /**
+     * @return The [x, y] coordinates of every cell to press, in row major order, empty if the board cannot be cleared
+     */
+    public int[][] getPresses() {
+        if (!solvable)
+            return new int[0][];
+        int[][] coords = new int[getPressCount()][];
+        int next = 0;
+        for (int y = 0; y < height; y++) {
+            for (int w = 0; w < stride; w++) {
+                long word = presses[y * stride + w];
+                while (word != 0) {
+                    coords[next++] = new int[]{(w << 6) + Long.numberOfTrailingZeros(word), y};
+                    word &= word - 1;
+                }
+            }
+        }
+        return coords;
+    }
+
+    /**
+     * Packs the presses in the layout of a {@link PackedBoard}
+     *
+     * @return Bit {@code y * width + x} is set if the cell at x, y must be pressed
+     * @throws IllegalStateException if the board does not fit in a single long or cannot be cleared
+     */
+    public long toBits() {
+        if (!solvable || width * height > PackedBoard.MAX_CELLS)
+            throw new IllegalStateException("Solution cannot be packed into a long");
+        long bits = 0;
+        for (int y = height - 1; y >= 0; y--) {
+            bits = bits << width | presses[y];
+        }
+        return bits;
+    }
+}
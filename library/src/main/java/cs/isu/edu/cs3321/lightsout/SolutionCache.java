@@ -0,0 +1,373 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.lightsout;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import lombok.Getter;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the minimal solutions of boards, so repeated boards are looked up instead of solved again. Solutions of
+ * boards which fit in a {@link PackedBoard} are kept in a bounded, concurrent least recently used cache per board size,
+ * keyed by their packed bits. Boards of up to {@link #MAX_TABLE_CELLS} cells may instead be answered from a table of
+ * every board, written offline with {@link #writeTable(int, int, Path)} and memory mapped with {@link #attach(Path)}.
+ * Larger boards are kept in a second cache per board size, keyed by their rows and bounded by the bytes its boards
+ * and solutions take rather than by their number, as a single board may take up to 128 KiB.
+ * <p>
+ * A table holds a 16 byte header (the magic {@code "LOST"}, the format version, the width and the height as 32 bit
+ * values) followed by one 32 bit entry per board, in the order of the packed bits of the board, holding the packed
+ * presses of its minimal solution or -1 if it cannot be cleared.
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public final class SolutionCache {
+
+    /**
+     * Largest board, in cells, for which a table can be written. Its table takes 1 GiB.
+     */
+    public static final int MAX_TABLE_CELLS = 28;
+
+    /**
+     * Number of solutions kept per board size unless changed with {@link #setCapacity(long)}
+     */
+    public static final long DEFAULT_CAPACITY = 1L << 16;
+
+    /**
+     * Bytes of boards and solutions larger than a {@link PackedBoard} kept per board size unless changed with
+     * {@link #setWideCapacity(long)}
+     */
+    public static final long DEFAULT_WIDE_BYTES = 16L << 20;
+
+    private static final int MAGIC = 0x4C4F5354;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int UNSOLVABLE = -1;
+
+    private static final Map<Long, SolutionCache> CACHES = new ConcurrentHashMap<>();
+    private static volatile long capacity = DEFAULT_CAPACITY;
+    private static volatile long wideBytes = DEFAULT_WIDE_BYTES;
+
+    @Getter
+    private final int width;
+    @Getter
+    private final int height;
+    private final Solver solver;
+    private final Cache<Long, Solution> cache;
+    private final Cache<Rows, Solution> wide;
+    private volatile ByteBuffer table;
+
+    /**
+     * Returns the cache for boards of the provided dimensions, creating it on first use
+     *
+     * @param width  Number of columns of the board
+     * @param height Number of rows of the board
+     * @return The shared cache for that size
+     */
+    public static SolutionCache forSize(int width, int height) {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("A board cannot be " + width + "x" + height);
+        return CACHES.computeIfAbsent((long) width << 32 | height,
+                key -> new SolutionCache(width, height, capacity, wideBytes));
+    }
+
+    /**
+     * Sets the number of solutions kept by each cache created after this call
+     *
+     * @param entries Maximum number of solutions per board size, 0 disables caching
+     */
+    public static void setCapacity(long entries) {
+        if (entries < 0)
+            throw new IllegalArgumentException("Capacity cannot be negative");
+        capacity = entries;
+    }
+
+    /**
+     * Sets the memory kept for boards larger than a {@link PackedBoard} by each cache created after this call
+     *
+     * @param bytes Maximum bytes of boards and solutions per board size, 0 disables caching of those boards
+     */
+    public static void setWideCapacity(long bytes) {
+        if (bytes < 0)
+            throw new IllegalArgumentException("Capacity cannot be negative");
+        wideBytes = bytes;
+    }
+
+    /**
+     * Constructor
+     *
+     * @param width    Number of columns of the board
+     * @param height   Number of rows of the board
+     * @param capacity Maximum number of solutions of packed boards kept
+     * @param bytes    Maximum bytes of boards and solutions larger than a packed board kept
+     */
+    private SolutionCache(int width, int height, long capacity, long bytes) {
+        this.width = width;
+        this.height = height;
+        this.solver = Solver.forSize(width, height);
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(capacity)
+                .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+                .recordStats()
+                .build();
+        this.wide = CacheBuilder.newBuilder()
+                .maximumWeight(bytes)
+                .weigher((Rows rows, Solution solution) -> rows.weight())
+                .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Finds the solution of a board which needs the fewest presses
+     *
+     * @param board The board to solve
+     * @return The solution, which is marked unsolvable if the board cannot be cleared
+     */
+    public Solution solve(Board board) {
+        if (board.getWidth() != width || board.getHeight() != height)
+            throw new IllegalArgumentException("Cache is for " + width + "x" + height + " boards");
+        if (!(board instanceof PackedBoard)) {
+            Rows rows = new Rows(board.toRows());
+            Solution solution = wide.getIfPresent(rows);
+            if (solution == null) {
+                solution = solver.solve(rows.words);
+                wide.put(rows, solution);
+            }
+            return solution;
+        }
+
+        long bits = ((PackedBoard) board).getBits();
+        ByteBuffer lookup = table;
+        if (lookup != null)
+            return toSolution(lookup.getInt(HEADER_BYTES + ((int) bits << 2)));
+
+        Solution solution = cache.getIfPresent(bits);
+        if (solution == null) {
+            solution = solver.solve(board);
+            cache.put(bits, solution);
+        }
+        return solution;
+    }
+
+    /**
+     * Tests whether a board can be cleared
+     *
+     * @param board The board to test
+     * @return True if some set of presses turns every light off
+     */
+    public boolean isSolvable(Board board) {
+        return solve(board).isSolvable();
+    }
+
+    /**
+     * @return True if a table is answering for this board size
+     */
+    public boolean hasTable() {
+        return table != null;
+    }
+
+    /**
+     * @return The hits, misses and evictions of the cache of packed boards, which does not count table lookups
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * @return The hits, misses and evictions of the cache of boards larger than a packed board
+     */
+    public CacheStats wideStats() {
+        return wide.stats();
+    }
+
+    /**
+     * Memory maps a table written by {@link #writeTable(int, int, Path)} and answers every later lookup from it
+     *
+     * @param file The table
+     * @throws IOException              if the table cannot be read
+     * @throws IllegalArgumentException if the file is not a table of this board size
+     */
+    public void attach(Path file) throws IOException {
+        if (width * height > MAX_TABLE_CELLS)
+            throw new IllegalArgumentException("Tables are limited to boards of " + MAX_TABLE_CELLS + " cells");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long expected = HEADER_BYTES + ((long) Integer.BYTES << width * height);
+            if (channel.size() != expected)
+                throw new IllegalArgumentException(file + " is not a table of " + width + "x" + height + " boards");
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, expected);
+            if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != FORMAT_VERSION
+                    || mapped.getInt(8) != width || mapped.getInt(12) != height)
+                throw new IllegalArgumentException(file + " is not a table of " + width + "x" + height + " boards");
+            table = mapped;
+        }
+    }
+
+    /**
+     * Attaches a table to the cache of its board size
+     *
+     * @param file The table, written by {@link #writeTable(int, int, Path)}
+     * @return The cache the table was attached to
+     * @throws IOException              if the table cannot be read
+     * @throws IllegalArgumentException if the file is not a table
+     */
+    public static SolutionCache attachTable(Path file) throws IOException {
+        int width;
+        int height;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // keep reading until the header is complete or the file ends
+            }
+            if (header.hasRemaining() || header.getInt(0) != MAGIC)
+                throw new IllegalArgumentException(file + " is not a solution table");
+            width = header.getInt(8);
+            height = header.getInt(12);
+        }
+        SolutionCache cache = forSize(width, height);
+        cache.attach(file);
+        return cache;
+    }
+
+    /**
+     * Writes the table of the minimal solution of every board of a size. Rather than solving each board, every set of
+     * presses is applied once, in Gray code order so each step is a single XOR, and each board keeps the smallest set
+     * of presses which produces it. Boards which no presses produce cannot be cleared.
+     *
+     * @param width  Number of columns of the boards
+     * @param height Number of rows of the boards
+     * @param file   The file to write, replaced if it exists
+     * @throws IOException              if the table cannot be written
+     * @throws IllegalArgumentException if the boards have more than {@link #MAX_TABLE_CELLS} cells
+     */
+    public static void writeTable(int width, int height, Path file) throws IOException {
+        int cells = width * height;
+        if (width <= 0 || height <= 0 || cells > MAX_TABLE_CELLS)
+            throw new IllegalArgumentException("Tables are limited to boards of " + MAX_TABLE_CELLS + " cells");
+
+        PackedBoard board = new PackedBoard(width, height);
+        long[] masks = new long[cells];
+        for (int i = 0; i < cells; i++) {
+            masks[i] = board.toggleMask(i % width, i / width);
+        }
+        int[] entries = new int[1 << cells];
+        Arrays.fill(entries, UNSOLVABLE);
+        int lit = 0;
+        int presses = 0;
+        entries[0] = 0;
+        for (int g = 1; g < 1 << cells; g++) {
+            int bit = Integer.numberOfTrailingZeros(g);
+            lit ^= (int) masks[bit];
+            presses ^= 1 << bit;
+            int known = entries[lit];
+            if (known == UNSOLVABLE || Integer.bitCount(presses) < Integer.bitCount(known))
+                entries[lit] = presses;
+        }
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(width);
+            out.writeInt(height);
+            for (int entry : entries) {
+                out.writeInt(entry);
+            }
+        }
+    }
+
+    /**
+     * Writes a table from the command line
+     *
+     * @param args The width and height of the boards, and the file to write
+     * @throws IOException if the table cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: SolutionCache <width> <height> <file>");
+            System.exit(1);
+        }
+        writeTable(Integer.parseInt(args[0]), Integer.parseInt(args[1]), Path.of(args[2]));
+    }
+
+    /**
+     * Expands an entry of a table
+     *
+     * @param entry The packed presses of the minimal solution, or -1 if the board cannot be cleared
+     * @return The solution
+     */
+    private Solution toSolution(int entry) {
+        if (entry == UNSOLVABLE)
+            return Solution.unsolvable(width, height);
+        long rowMask = (1L << width) - 1;
+        long[] presses = new long[height];
+        for (int y = 0; y < height; y++) {
+            presses[y] = (entry >>> y * width) & rowMask;
+        }
+        return new Solution(width, height, true, presses);
+    }
+
+    /**
+     * The rows of a board larger than a {@link PackedBoard}, compared by their words
+     */
+    private static final class Rows {
+
+        /**
+         * Bytes held by a cached board and its solution besides their words: the two arrays, the key, the solution
+         * and the entry of the cache
+         */
+        private static final int OVERHEAD_BYTES = 128;
+
+        private final long[] words;
+        private final int hash;
+
+        Rows(long[] words) {
+            this.words = words;
+            this.hash = Arrays.hashCode(words);
+        }
+
+        /**
+         * @return The approximate bytes held by these rows and the solution of their board
+         */
+        int weight() {
+            return OVERHEAD_BYTES + 2 * Long.BYTES * words.length;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Rows && hash == ((Rows) other).hash && Arrays.equals(words, ((Rows) other).words);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
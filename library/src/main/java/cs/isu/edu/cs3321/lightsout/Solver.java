@@ -0,0 +1,317 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.lightsout;
+
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Solves Lights Out boards with linear algebra over GF(2).
+ * <p>
+ * Once the presses of the first row are chosen, the presses of every other row are forced: a cell left lit in row r
+ * can only be cleared by pressing the cell below it. "Chasing" the lights down the board in this way leaves a residue
+ * in the last row which is an affine function {@code M p + c} of the first row presses p. The board is solvable exactly
+ * when {@code M p = c} is, so instead of eliminating the full cells x cells toggle matrix only the width x width
+ * matrix M has to be eliminated. This is done once per board size and cached, along with the null space of the
+ * toggle matrix, which is used to pick the solution with the fewest presses. On very large boards only part of the null
+ * space is searched, so the solution found may not be the shortest.
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public final class Solver {
+
+    /**
+     * Largest null space which is searched exhaustively for the minimal solution
+     */
+    public static final int MAX_NULLITY = 16;
+
+    /**
+     * Upper bound on the number of words XOR'ed while searching the null space, so large boards stay fast
+     */
+    private static final long SEARCH_BUDGET = 1L << 24;
+
+    private static final Map<Long, Solver> SOLVERS = new ConcurrentHashMap<>();
+
+    @Getter
+    private final int width;
+    @Getter
+    private final int height;
+    private final int stride;
+    private final long lastMask;
+    /**
+     * Rows of the transform E for which E M is in reduced row echelon form
+     */
+    private final long[][] transform;
+    private final int[] pivots;
+    private final int rank;
+    /**
+     * Press patterns which leave every board unchanged, one per dimension of the null space
+     */
+    private final long[][] nullPatterns;
+
+    /**
+     * Returns the solver for boards of the provided dimensions, creating and caching it on first use
+     *
+     * @param width  Number of columns of the board
+     * @param height Number of rows of the board
+     * @return The shared solver for that size
+     */
+    public static Solver forSize(int width, int height) {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("A board cannot be " + width + "x" + height);
+        return SOLVERS.computeIfAbsent((long) width << 32 | height, key -> new Solver(width, height));
+    }
+
+    /**
+     * Constructor, performs the elimination for the board size
+     *
+     * @param width  Number of columns of the board
+     * @param height Number of rows of the board
+     */
+    private Solver(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.stride = (width + 63) >>> 6;
+        this.lastMask = (width & 63) == 0 ? -1L : (1L << (width & 63)) - 1;
+
+        // column j of M is the residue left by pressing only cell j of the first row of an empty board
+        long[][] matrix = new long[width][stride];
+        long[] empty = new long[height * stride];
+        long[] first = new long[stride];
+        long[] presses = new long[height * stride];
+        for (int j = 0; j < width; j++) {
+            first[j >>> 6] = 1L << j;
+            long[] residue = chase(empty, first, presses);
+            first[j >>> 6] = 0;
+            for (int i = 0; i < width; i++) {
+                if ((residue[i >>> 6] >>> i & 1) != 0)
+                    matrix[i][j >>> 6] |= 1L << j;
+            }
+        }
+
+        transform = new long[width][stride];
+        for (int i = 0; i < width; i++) {
+            transform[i][i >>> 6] = 1L << i;
+        }
+        pivots = new int[width];
+        int r = 0;
+        for (int col = 0; col < width && r < width; col++) {
+            int pivot = -1;
+            for (int i = r; i < width; i++) {
+                if ((matrix[i][col >>> 6] >>> col & 1) != 0) {
+                    pivot = i;
+                    break;
+                }
+            }
+            if (pivot < 0)
+                continue;
+            swap(matrix, pivot, r);
+            swap(transform, pivot, r);
+            for (int i = 0; i < width; i++) {
+                if (i != r && (matrix[i][col >>> 6] >>> col & 1) != 0) {
+                    xor(matrix[i], matrix[r]);
+                    xor(transform[i], transform[r]);
+                }
+            }
+            pivots[r++] = col;
+        }
+        rank = r;
+
+        // every free column of the echelon form gives one first row which chases out to an all zero residue
+        nullPatterns = new long[width - rank][];
+        int next = 0;
+        int pivotIndex = 0;
+        for (int col = 0; col < width; col++) {
+            if (pivotIndex < rank && pivots[pivotIndex] == col) {
+                pivotIndex++;
+                continue;
+            }
+            long[] start = new long[stride];
+            start[col >>> 6] |= 1L << col;
+            for (int i = 0; i < rank; i++) {
+                if ((matrix[i][col >>> 6] >>> col & 1) != 0)
+                    start[pivots[i] >>> 6] |= 1L << pivots[i];
+            }
+            long[] pattern = new long[height * stride];
+            chase(empty, start, pattern);
+            nullPatterns[next++] = pattern;
+        }
+    }
+
+    /**
+     * @return The dimension of the null space of the toggle matrix, every solvable board has 2^nullity solutions
+     */
+    public int nullity() {
+        return nullPatterns.length;
+    }
+
+    /**
+     * Returns one of the press patterns which leave every board unchanged. Every such pattern is a sum of these.
+     *
+     * @param index Index of the pattern, below {@link #nullity()}
+     * @return The pattern as a set of presses
+     */
+    public Solution nullPattern(int index) {
+        return new Solution(width, height, true, nullPatterns[index].clone());
+    }
+
+    /**
+     * Tests whether a board can be cleared
+     *
+     * @param board The board to test
+     * @return True if some set of presses turns every light off
+     */
+    public boolean isSolvable(Board board) {
+        return firstRow(chase(rows(board), new long[stride], new long[height * stride])) != null;
+    }
+
+    /**
+     * Finds the solution of a board which needs the fewest presses
+     *
+     * @param board The board to solve
+     * @return The solution, which is marked unsolvable if the board cannot be cleared
+     */
+    public Solution solve(Board board) {
+        return solve(rows(board));
+    }
+
+    /**
+     * Finds the solution of a board which needs the fewest presses
+     *
+     * @param board The lights of the board as row aligned words, {@code ceil(width / 64)} words per row
+     * @return The solution, which is marked unsolvable if the board cannot be cleared
+     */
+    public Solution solve(long[] board) {
+        if (board.length != height * stride)
+            throw new IllegalArgumentException("Board does not have " + height + " rows of " + stride + " words");
+        long[] presses = new long[height * stride];
+        long[] first = firstRow(chase(board, new long[stride], presses));
+        if (first == null)
+            return Solution.unsolvable(width, height);
+        chase(board, first, presses);
+        return new Solution(width, height, true, minimize(presses));
+    }
+
+    /**
+     * Solves {@code M p = c} for the first row presses p, using the cached elimination of M
+     *
+     * @param residue The residue c left by chasing the board with no first row presses
+     * @return The first row presses, or null if there are none
+     */
+    private long[] firstRow(long[] residue) {
+        long[] first = new long[stride];
+        for (int i = 0; i < width; i++) {
+            long parity = 0;
+            for (int w = 0; w < stride; w++) {
+                parity ^= transform[i][w] & residue[w];
+            }
+            if ((Long.bitCount(parity) & 1) != 0) {
+                if (i >= rank)
+                    return null;
+                first[pivots[i] >>> 6] |= 1L << pivots[i];
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Walks the combinations of null space patterns in Gray code order, so each step costs a single XOR, and keeps the
+     * solution with the fewest presses
+     *
+     * @param presses Any solution of the board, overwritten by the result
+     * @return The solution with the fewest presses among those searched
+     */
+    private long[] minimize(long[] presses) {
+        int k = Math.min(nullPatterns.length, MAX_NULLITY);
+        while (k > 0 && ((long) presses.length << k) > SEARCH_BUDGET)
+            k--;
+        if (k == 0)
+            return presses;
+        long[] current = presses.clone();
+        int best = count(presses);
+        for (int g = 1; g < 1 << k; g++) {
+            xor(current, nullPatterns[Integer.numberOfTrailingZeros(g)]);
+            int pressed = count(current);
+            if (pressed < best) {
+                best = pressed;
+                System.arraycopy(current, 0, presses, 0, presses.length);
+            }
+        }
+        return presses;
+    }
+
+    /**
+     * Chases the lights of a board down to the last row
+     *
+     * @param board   The lights of the board as row aligned words
+     * @param first   Presses of the first row
+     * @param presses Receives the presses of every row
+     * @return The lights left on in the last row
+     */
+    private long[] chase(long[] board, long[] first, long[] presses) {
+        long[] residue = new long[stride];
+        System.arraycopy(first, 0, presses, 0, stride);
+        for (int r = 0; r < height; r++) {
+            int row = r * stride;
+            // lights of row r after its own presses and those of the rows around it, except the row below
+            for (int w = 0; w < stride; w++) {
+                long p = presses[row + w];
+                long left = p << 1 | (w > 0 ? presses[row + w - 1] >>> 63 : 0);
+                long right = p >>> 1 | (w + 1 < stride ? presses[row + w + 1] << 63 : 0);
+                long lit = board[row + w] ^ p ^ left ^ right;
+                if (r > 0)
+                    lit ^= presses[row - stride + w];
+                if (w == stride - 1)
+                    lit &= lastMask;
+                if (r + 1 < height)
+                    presses[row + stride + w] = lit;
+                else
+                    residue[w] = lit;
+            }
+        }
+        return residue;
+    }
+
+    private long[] rows(Board board) {
+        if (board.getWidth() != width || board.getHeight() != height)
+            throw new IllegalArgumentException("Solver is for " + width + "x" + height + " boards");
+        return board.toRows();
+    }
+
+    private static int count(long[] words) {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    private static void xor(long[] target, long[] source) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] ^= source[i];
+        }
+    }
+
+    private static void swap(long[][] rows, int a, int b) {
+        long[] tmp = rows[a];
+        rows[a] = rows[b];
+        rows[b] = tmp;
+    }
+}
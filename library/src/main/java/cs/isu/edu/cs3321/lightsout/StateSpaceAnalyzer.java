@@ -0,0 +1,300 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.lightsout;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Explores every board of a size which fits in a {@link PackedBoard}, such as the 2^25 boards of the 5x5 game. The
+ * boards are searched breadth first from the empty board, one press at a time, so the level at which a board is first
+ * reached is the length of its minimal solution. Each level is a bitmap with one bit per board, expanded in parallel
+ * on a {@link ForkJoinPool} by splitting the bitmap into ranges of words, and the boards never reached cannot be
+ * cleared.
+ * <p>
+ * The results are streamed to a report as each level completes: the number of boards at each solution length, the
+ * number of solvable boards and of solvability classes (sets of boards which can reach each other, all of the same
+ * size), and the hardest boards. The report is plain text of tab separated lines, starting with a keyword:
+ * <pre>
+ * size      width height
+ * level     presses boards
+ * solvable  boards
+ * classes   count
+ * hardest   presses boards
+ * board     packed bits, in hexadecimal
+ * </pre>
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public final class StateSpaceAnalyzer {
+
+    /**
+     * Largest board, in cells, which can be analyzed. Each of the three bitmaps of such a board takes 512 MiB.
+     */
+    public static final int MAX_CELLS = 32;
+
+    /**
+     * Number of hardest boards written to the report unless changed with {@link #setHardestLimit(int)}
+     */
+    public static final int DEFAULT_HARDEST_LIMIT = 100;
+
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final int SPLIT_WORDS = 1 << 10;
+
+    @Getter
+    private final int width;
+    @Getter
+    private final int height;
+    private final long[] masks;
+    private final ForkJoinPool pool;
+    @Getter
+    private int hardestLimit = DEFAULT_HARDEST_LIMIT;
+
+    /**
+     * Constructor
+     *
+     * @param width  Number of columns of the boards
+     * @param height Number of rows of the boards
+     * @param pool   The pool on which the levels are expanded
+     * @throws IllegalArgumentException if the boards have more than {@link #MAX_CELLS} cells
+     */
+    public StateSpaceAnalyzer(int width, int height, ForkJoinPool pool) {
+        if (width <= 0 || height <= 0 || width * height > MAX_CELLS)
+            throw new IllegalArgumentException("The state space is limited to boards of " + MAX_CELLS + " cells");
+        this.width = width;
+        this.height = height;
+        this.pool = pool;
+
+        PackedBoard board = new PackedBoard(width, height);
+        masks = new long[width * height];
+        for (int i = 0; i < masks.length; i++) {
+            masks[i] = board.toggleMask(i % width, i / width);
+        }
+    }
+
+    /**
+     * Sets the number of hardest boards listed by the report
+     *
+     * @param limit The largest number of boards to list, the count of hardest boards is always reported
+     */
+    public void setHardestLimit(int limit) {
+        if (limit < 0)
+            throw new IllegalArgumentException("The limit cannot be negative");
+        hardestLimit = limit;
+    }
+
+    /**
+     * Explores every board, writing the report as it goes
+     *
+     * @param report Receives the report, flushed after every level
+     * @return The results of the analysis
+     */
+    public Analysis analyze(PrintWriter report) {
+        int cells = width * height;
+        int words = Math.max(1, (int) ((1L << cells) >>> 6));
+        long[] visited = new long[words];
+        long[] frontier = new long[words];
+        long[] next = new long[words];
+        frontier[0] = visited[0] = 1L;
+
+        report.printf("size\t%d\t%d%n", width, height);
+        List<Long> levels = new ArrayList<>();
+        long solvable = 0;
+        long found = 1;
+        while (found > 0) {
+            report.printf("level\t%d\t%d%n", levels.size(), found);
+            report.flush();
+            levels.add(found);
+            solvable += found;
+
+            found = pool.invoke(new Expand(frontier, visited, next, 0, words));
+            if (found == 0)
+                break;
+            for (int i = 0; i < words; i++) {
+                visited[i] |= next[i];
+            }
+            long[] done = frontier;
+            frontier = next;
+            next = done;
+            Arrays.fill(next, 0L);
+        }
+
+        long classes = (1L << cells) / solvable;
+        List<Long> hardest = new ArrayList<>();
+        for (int i = 0; i < words && hardest.size() < hardestLimit; i++) {
+            for (long word = frontier[i]; word != 0 && hardest.size() < hardestLimit; word &= word - 1) {
+                hardest.add(((long) i << 6) + Long.numberOfTrailingZeros(word));
+            }
+        }
+
+        long[] histogram = levels.stream().mapToLong(Long::longValue).toArray();
+        report.printf("solvable\t%d%n", solvable);
+        report.printf("classes\t%d%n", classes);
+        report.printf("hardest\t%d\t%d%n", histogram.length - 1, histogram[histogram.length - 1]);
+        for (long board : hardest) {
+            report.printf("board\t%x%n", board);
+        }
+        report.flush();
+        return new Analysis(width, height, histogram, solvable, classes, Collections.unmodifiableList(hardest));
+    }
+
+    /**
+     * Analyzes a size of board from the command line, optionally writing its table of solutions for
+     * {@link SolutionCache} as well
+     *
+     * @param args The width and height of the boards and the file to write the report to, followed by the options
+     *             {@code --table=file}, {@code --hardest=count} and {@code --threads=count}
+     * @throws IOException if the report or the table cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: StateSpaceAnalyzer <width> <height> <report> "
+                    + "[--table=file] [--hardest=count] [--threads=count]");
+            System.exit(1);
+        }
+        int width = Integer.parseInt(args[0]);
+        int height = Integer.parseInt(args[1]);
+        Path table = null;
+        int hardest = DEFAULT_HARDEST_LIMIT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 3; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.startsWith("--table="))
+                table = Path.of(arg.substring("--table=".length()));
+            else if (arg.startsWith("--hardest="))
+                hardest = Integer.parseInt(arg.substring("--hardest=".length()));
+            else if (arg.startsWith("--threads="))
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            else
+                throw new IllegalArgumentException("Unknown option " + arg);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try (PrintWriter report = new PrintWriter(Files.newBufferedWriter(Path.of(args[2])))) {
+            StateSpaceAnalyzer analyzer = new StateSpaceAnalyzer(width, height, pool);
+            analyzer.setHardestLimit(hardest);
+            analyzer.analyze(report);
+        } finally {
+            pool.shutdown();
+        }
+        if (table != null)
+            SolutionCache.writeTable(width, height, table);
+    }
+
+    /**
+     * The results of analyzing every board of a size
+     */
+    @Getter
+    public static final class Analysis {
+
+        private final int width;
+        private final int height;
+        /**
+         * Number of boards whose minimal solution takes each number of presses, indexed by presses
+         */
+        private final long[] histogram;
+        private final long solvable;
+        /**
+         * Number of classes of boards, where the boards of a class can be turned into each other
+         */
+        private final long classes;
+        /**
+         * Packed bits of the boards needing the most presses, up to the limit of the analyzer
+         */
+        private final List<Long> hardest;
+
+        private Analysis(int width, int height, long[] histogram, long solvable, long classes, List<Long> hardest) {
+            this.width = width;
+            this.height = height;
+            this.histogram = histogram;
+            this.solvable = solvable;
+            this.classes = classes;
+            this.hardest = hardest;
+        }
+
+        /**
+         * @return The number of presses in the minimal solution of the hardest boards
+         */
+        public int getMaxPresses() {
+            return histogram.length - 1;
+        }
+    }
+
+    /**
+     * Finds the boards one press away from a range of the current level which have not been reached before, marking
+     * them in the next level. Ranges of more than {@link #SPLIT_WORDS} words are split in halves.
+     */
+    @SuppressWarnings("serial")
+    private final class Expand extends RecursiveTask<Long> {
+
+        private final long[] frontier;
+        private final long[] visited;
+        private final long[] next;
+        private final int from;
+        private final int to;
+
+        Expand(long[] frontier, long[] visited, long[] next, int from, int to) {
+            this.frontier = frontier;
+            this.visited = visited;
+            this.next = next;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from > SPLIT_WORDS) {
+                int middle = (from + to) >>> 1;
+                Expand left = new Expand(frontier, visited, next, from, middle);
+                left.fork();
+                long right = new Expand(frontier, visited, next, middle, to).compute();
+                return left.join() + right;
+            }
+
+            long found = 0;
+            for (int i = from; i < to; i++) {
+                for (long word = frontier[i]; word != 0; word &= word - 1) {
+                    long board = ((long) i << 6) + Long.numberOfTrailingZeros(word);
+                    for (long mask : masks) {
+                        long target = board ^ mask;
+                        int index = (int) (target >>> 6);
+                        long bit = 1L << target;
+                        // the visited bits do not change during a level, the next bits are set by every task
+                        if ((visited[index] & bit) != 0 || ((long) WORDS.getOpaque(next, index) & bit) != 0)
+                            continue;
+                        if (((long) WORDS.getAndBitwiseOr(next, index, bit) & bit) == 0)
+                            found++;
+                    }
+                }
+            }
+            return found;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.lightsout;
+
+/**
+ * Thrown when a change cannot be made right now but may succeed if tried again later, such as a move on a game which
+ * is frozen while it is handed over. Other illegal states are faults rather than load, and are not thrown as this.
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+@SuppressWarnings("serial")
+public class UnavailableException extends IllegalStateException {
+
+    /**
+     * Constructor
+     *
+     * @param message Why the change cannot be made now
+     */
+    public UnavailableException(String message) {
+        super(message);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param message Why the change cannot be made now
+     * @param cause   The failure which made it unavailable
+     */
+    public UnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,251 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.lightsout;
+
+import lombok.Getter;
+
+/**
+ * Board for games too large for a {@link PackedBoard}. Each row is its own array of {@code ceil(width / 64)} words, so a
+ * move touches at most three rows and never depends on the size of the board, and {@link #pressed(int, int)} only has
+ * to copy the rows it touches while sharing the others. The number of lights which are on is updated by every flip, so
+ * {@link #isClear()} does not have to scan the rows.
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public final class WideBoard extends Board {
+
+    @Getter
+    private final int width;
+    @Getter
+    private final int height;
+    private final int stride;
+    private final long lastMask;
+    private final long[][] rows;
+    private int lit;
+
+    /**
+     * Constructs a new board, with all lights off, of the provided dimensions
+     *
+     * @param width  Number of columns in the board
+     * @param height Number of rows in the board
+     */
+    public WideBoard(int width, int height) {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("A board cannot be " + width + "x" + height);
+        this.width = width;
+        this.height = height;
+        this.stride = (width + 63) >>> 6;
+        this.lastMask = (width & 63) == 0 ? -1L : (1L << (width & 63)) - 1;
+        this.rows = new long[height][stride];
+    }
+
+    /**
+     * Constructor sharing the provided rows, which must hold the same lights as the other board
+     *
+     * @param other Board whose dimensions and count of lights are used
+     * @param rows  The rows of the new board
+     */
+    private WideBoard(WideBoard other, long[][] rows) {
+        this.width = other.width;
+        this.height = other.height;
+        this.stride = other.stride;
+        this.lastMask = other.lastMask;
+        this.rows = rows;
+        this.lit = other.lit;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void press(int x, int y) {
+        checkLocation(x, y);
+        pressRow(rows[y], x);
+        if (y > 0)
+            toggle(rows[y - 1], x);
+        if (y < height - 1)
+            toggle(rows[y + 1], x);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    WideBoard pressed(int x, int y) {
+        checkLocation(x, y);
+        long[][] next = rows.clone();
+        for (int r = Math.max(0, y - 1); r <= Math.min(height - 1, y + 1); r++) {
+            next[r] = rows[r].clone();
+        }
+        WideBoard board = new WideBoard(this, next);
+        board.press(x, y);
+        return board;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flip(int x, int y) {
+        checkLocation(x, y);
+        toggle(rows[y], x);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int get(int x, int y) {
+        checkLocation(x, y);
+        return (int) (rows[y][x >>> 6] >>> x) & 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void set(int x, int y, int val) {
+        checkLocation(x, y);
+        if ((val > 0) != ((rows[y][x >>> 6] >>> x & 1) != 0))
+            toggle(rows[y], x);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void xor(Board other) {
+        checkDimensions(other);
+        long[][] others = ((WideBoard) other).rows;
+        int count = 0;
+        for (int y = 0; y < height; y++) {
+            long[] row = rows[y];
+            long[] mask = others[y];
+            for (int i = 0; i < stride; i++) {
+                row[i] ^= mask[i];
+                count += Long.bitCount(row[i]);
+            }
+        }
+        lit = count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isClear() {
+        return lit == 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int litCount() {
+        return lit;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public WideBoard copy() {
+        long[][] copy = new long[height][];
+        for (int y = 0; y < height; y++) {
+            copy[y] = rows[y].clone();
+        }
+        return new WideBoard(this, copy);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long[] toRows() {
+        long[] flat = new long[height * stride];
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(rows[y], 0, flat, y * stride, stride);
+        }
+        return flat;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void fromRows(long[] flat) {
+        int count = 0;
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(flat, y * stride, rows[y], 0, stride);
+            rows[y][stride - 1] &= lastMask;
+            for (long word : rows[y]) {
+                count += Long.bitCount(word);
+            }
+        }
+        lit = count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[][] toArray() {
+        int[][] board = new int[height][width];
+        for (int y = 0; y < height; y++) {
+            long[] row = rows[y];
+            for (int x = 0; x < width; x++) {
+                board[y][x] = (int) (row[x >>> 6] >>> x) & 1;
+            }
+        }
+        return board;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int stride() {
+        return stride;
+    }
+
+    /**
+     * Flips the cells x - 1, x and x + 1 of a row
+     *
+     * @param row The words of the row
+     * @param x   The selected column
+     */
+    private void pressRow(long[] row, int x) {
+        toggle(row, x);
+        if (x > 0)
+            toggle(row, x - 1);
+        if (x < width - 1)
+            toggle(row, x + 1);
+    }
+
+    /**
+     * Flips one cell of a row, keeping the count of lights which are on
+     *
+     * @param row The words of the row
+     * @param x   The column of the cell
+     */
+    private void toggle(long[] row, int x) {
+        long word = row[x >>> 6] ^ 1L << x;
+        row[x >>> 6] = word;
+        lit += (word >>> x & 1) != 0 ? 1 : -1;
+    }
+}
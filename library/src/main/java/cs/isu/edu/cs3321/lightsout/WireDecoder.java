@@ -0,0 +1,194 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.lightsout;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads states, deltas and moves in the binary form described by {@link WireFormat}
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public final class WireDecoder {
+
+    /**
+     * Private constructor, as this class only holds static methods
+     */
+    private WireDecoder() {
+    }
+
+    /**
+     * Decodes a state of a game
+     *
+     * @param bytes The encoded state
+     * @return The decoded state
+     * @throws IllegalArgumentException if the bytes are not a complete state of a supported format version
+     */
+    public static GameSnapshot decode(byte[] bytes) {
+        return decode(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Decodes a state of a game from the provided buffer, starting at its position. The position is left after the
+     * end of the state.
+     *
+     * @param buffer The buffer holding the encoded state
+     * @return The decoded state
+     * @throws IllegalArgumentException if the bytes are not a complete state of a supported format version
+     */
+    public static GameSnapshot decode(ByteBuffer buffer) {
+        if (buffer.remaining() < WireFormat.HEADER_BYTES
+                || buffer.get() != WireFormat.MAGIC_L || buffer.get() != WireFormat.MAGIC_O)
+            throw new IllegalArgumentException("Not an encoded game state");
+        int format = buffer.get() & 0xFF;
+        if (format != WireFormat.FORMAT_VERSION)
+            throw new IllegalArgumentException("Unsupported format version " + format);
+        int flags = buffer.get();
+        int width = buffer.getShort() & 0xFFFF;
+        int height = buffer.getShort() & 0xFFFF;
+        long version = buffer.getLong();
+
+        Board board = Board.create(width, height);
+        int length = WireFormat.encodedLength(width, height) - WireFormat.HEADER_BYTES;
+        if (buffer.remaining() < length)
+            throw new IllegalArgumentException("Truncated game state");
+
+        int start = buffer.position();
+        if (board instanceof PackedBoard) {
+            ((PackedBoard) board).setBits(getBits(buffer, start, 0, board.cells()));
+        } else {
+            int stride = board.stride();
+            int tail = width - ((stride - 1) << 6);
+            long[] rows = new long[height * stride];
+            long offset = 0;
+            for (int i = 0; i < rows.length; i++) {
+                int bits = (i + 1) % stride == 0 ? tail : Long.SIZE;
+                rows[i] = getBits(buffer, start, offset, bits);
+                offset += bits;
+            }
+            board.fromRows(rows);
+        }
+        buffer.position(start + length);
+
+        return new GameSnapshot(board, (flags & WireFormat.WINNER) != 0, version);
+    }
+
+    /**
+     * Decodes a state of a game into the form used by the client
+     *
+     * @param bytes The encoded state
+     * @return The decoded state
+     * @throws IllegalArgumentException if the bytes are not a complete state of a supported format version
+     */
+    public static GameState decodeState(byte[] bytes) {
+        return decode(bytes).toState();
+    }
+
+    /**
+     * Checks whether a frame holds a delta rather than a state
+     *
+     * @param buffer The buffer holding the frame, starting at its position
+     * @return True if the frame starts as a delta
+     */
+    public static boolean isDelta(ByteBuffer buffer) {
+        int start = buffer.position();
+        return buffer.remaining() >= 2
+                && buffer.get(start) == WireFormat.MAGIC_L && buffer.get(start + 1) == WireFormat.MAGIC_D;
+    }
+
+    /**
+     * Decodes the change between two versions of a game from the provided buffer, starting at its position. The
+     * position is left after the end of the delta.
+     *
+     * @param buffer The buffer holding the encoded delta
+     * @return The decoded delta
+     * @throws IllegalArgumentException if the bytes are not a complete delta of a supported format version
+     */
+    public static BoardDelta decodeDelta(ByteBuffer buffer) {
+        if (buffer.remaining() < WireFormat.DELTA_HEADER_BYTES
+                || buffer.get() != WireFormat.MAGIC_L || buffer.get() != WireFormat.MAGIC_D)
+            throw new IllegalArgumentException("Not an encoded delta");
+        int format = buffer.get() & 0xFF;
+        if (format != WireFormat.FORMAT_VERSION)
+            throw new IllegalArgumentException("Unsupported format version " + format);
+        int flags = buffer.get();
+        int count = buffer.getInt();
+        long version = buffer.getLong();
+        if (count < 0 || buffer.remaining() / Integer.BYTES < count)
+            throw new IllegalArgumentException("Truncated delta");
+
+        int[] cells = new int[count];
+        for (int i = 0; i < count; i++) {
+            cells[i] = buffer.getInt();
+        }
+        return new BoardDelta(version, (flags & WireFormat.WINNER) != 0, cells);
+    }
+
+    /**
+     * Decodes the selection of a cell
+     *
+     * @param bytes The encoded move
+     * @return The selected column and row, as an [x, y] pair
+     * @throws IllegalArgumentException if the bytes are not a move
+     */
+    public static int[] decodeMove(byte[] bytes) {
+        if (bytes.length != WireFormat.MOVE_BYTES)
+            throw new IllegalArgumentException("A move is " + WireFormat.MOVE_BYTES + " bytes, not " + bytes.length);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new int[]{buffer.getShort() & 0xFFFF, buffer.getShort() & 0xFFFF};
+    }
+
+    /**
+     * Decodes a sequence of moves, sent back to back
+     *
+     * @param bytes The encoded moves
+     * @return The selected cells, each an [x, y] pair
+     * @throws IllegalArgumentException if the bytes are not a whole number of moves
+     */
+    public static int[][] decodeMoves(byte[] bytes) {
+        if (bytes.length % WireFormat.MOVE_BYTES != 0)
+            throw new IllegalArgumentException("Moves are " + WireFormat.MOVE_BYTES + " bytes each, not a total of "
+                    + bytes.length);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int[][] moves = new int[bytes.length / WireFormat.MOVE_BYTES][];
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = new int[]{buffer.getShort() & 0xFFFF, buffer.getShort() & 0xFFFF};
+        }
+        return moves;
+    }
+
+    /**
+     * Reads up to 64 consecutive bits of the lights of a state
+     *
+     * @param buffer The buffer holding the lights
+     * @param start  Index of the first byte of the lights
+     * @param offset Index of the first bit to read
+     * @param count  Number of bits to read
+     * @return The bits, in the low bits of the word
+     */
+    private static long getBits(ByteBuffer buffer, int start, long offset, int count) {
+        int index = start + (int) (offset >>> 3);
+        int shift = (int) (offset & 7);
+        int bytes = (shift + count + 7) >>> 3;
+        long bits = (buffer.get(index) & 0xFFL) >>> shift;
+        for (int i = 1; i < bytes; i++) {
+            bits |= (buffer.get(index + i) & 0xFFL) << ((i << 3) - shift);
+        }
+        return count == Long.SIZE ? bits : bits & ((1L << count) - 1);
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.lightsout;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes states, deltas and moves in the binary form described by {@link WireFormat}
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public final class WireEncoder {
+
+    /**
+     * Private constructor, as this class only holds static methods
+     */
+    private WireEncoder() {
+    }
+
+    /**
+     * Encodes a state of a game
+     *
+     * @param snapshot The state to encode
+     * @return The encoded state
+     */
+    public static byte[] encode(GameSnapshot snapshot) {
+        ByteBuffer buffer = ByteBuffer.allocate(WireFormat.encodedLength(snapshot.getWidth(), snapshot.getHeight()));
+        encode(snapshot, buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Encodes a state of a game into the provided buffer, starting at its position
+     *
+     * @param snapshot The state to encode
+     * @param buffer   Buffer with at least {@link WireFormat#encodedLength(int, int)} bytes remaining
+     */
+    public static void encode(GameSnapshot snapshot, ByteBuffer buffer) {
+        Board board = snapshot.getBoard();
+        int width = board.getWidth();
+        int height = board.getHeight();
+        buffer.put(WireFormat.MAGIC_L)
+                .put(WireFormat.MAGIC_O)
+                .put((byte) WireFormat.FORMAT_VERSION)
+                .put((byte) (snapshot.isWinner() ? WireFormat.WINNER : 0))
+                .putShort((short) width)
+                .putShort((short) height)
+                .putLong(snapshot.getVersion());
+
+        if (board instanceof PackedBoard) {
+            putBits(buffer, ((PackedBoard) board).getBits(), board.cells());
+            return;
+        }
+
+        // concatenate the rows, each of which ends part way through its last word
+        long[] rows = board.toRows();
+        int stride = board.stride();
+        int tail = width - ((stride - 1) << 6);
+        long pending = 0;
+        int filled = 0;
+        for (int i = 0; i < rows.length; i++) {
+            long word = rows[i];
+            int bits = (i + 1) % stride == 0 ? tail : Long.SIZE;
+            pending |= word << filled;
+            if (filled + bits >= Long.SIZE) {
+                putBits(buffer, pending, Long.SIZE);
+                pending = filled == 0 ? 0 : word >>> (Long.SIZE - filled);
+                filled = filled + bits - Long.SIZE;
+            } else {
+                filled += bits;
+            }
+        }
+        putBits(buffer, pending, filled);
+    }
+
+    /**
+     * Encodes the change between two versions of a game
+     *
+     * @param delta The change to encode
+     * @return The encoded delta
+     */
+    public static byte[] encodeDelta(BoardDelta delta) {
+        int count = delta.getCellCount();
+        ByteBuffer buffer = ByteBuffer.allocate(WireFormat.DELTA_HEADER_BYTES + count * Integer.BYTES)
+                .put(WireFormat.MAGIC_L)
+                .put(WireFormat.MAGIC_D)
+                .put((byte) WireFormat.FORMAT_VERSION)
+                .put((byte) (delta.isWinner() ? WireFormat.WINNER : 0))
+                .putInt(count)
+                .putLong(delta.getVersion());
+        for (int i = 0; i < count; i++) {
+            buffer.putInt(delta.getCell(i));
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Encodes the selection of a cell
+     *
+     * @param x The selected column
+     * @param y The selected row
+     * @return The encoded move
+     */
+    public static byte[] encodeMove(int x, int y) {
+        return ByteBuffer.allocate(WireFormat.MOVE_BYTES)
+                .putShort((short) x)
+                .putShort((short) y)
+                .array();
+    }
+
+    /**
+     * Writes the low bits of a word, least significant byte first
+     *
+     * @param buffer The buffer to write to
+     * @param bits   The word holding the bits
+     * @param count  Number of bits to write, rounded up to whole bytes
+     */
+    private static void putBits(ByteBuffer buffer, long bits, int count) {
+        for (int i = 0; i < count; i += Byte.SIZE) {
+            buffer.put((byte) (bits >>> i));
+        }
+    }
+}
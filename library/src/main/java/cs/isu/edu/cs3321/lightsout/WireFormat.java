@@ -0,0 +1,83 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.lightsout;
+
+/**
+ * Constants of the binary form of the game, shared by {@link WireEncoder} and {@link WireDecoder}.
+ * <p>
+ * A state is a 16 byte header followed by the lights of the board. The header holds, in network byte order, the magic
+ * bytes {@code 'L' 'O'}, the format version, a flags byte (bit 0 set when the game has been won), the width and the
+ * height as unsigned 16 bit values and the version of the game as a 64 bit value. The lights follow as
+ * {@code ceil(width * height / 8)} bytes, where the light x, y is bit {@code (y * width + x) % 8} of byte
+ * {@code (y * width + x) / 8}. A move is the x and the y of the selected cell as unsigned 16 bit values.
+ * <p>
+ * A delta, pushed to clients following a game, is a 16 byte header holding the magic bytes {@code 'L' 'D'}, the format
+ * version, the flags byte, the number of toggled cells as a 32 bit value and the version of the game, followed by the
+ * number, {@code y * width + x}, of each toggled cell as a 32 bit value.
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public final class WireFormat {
+
+    /**
+     * Media type of an encoded state
+     */
+    public static final String STATE_TYPE = "application/vnd.lightsout.state";
+    /**
+     * Media type of an encoded move
+     */
+    public static final String MOVE_TYPE = "application/vnd.lightsout.move";
+    /**
+     * Version of the format written by the encoder and the only one read by the decoder
+     */
+    public static final int FORMAT_VERSION = 1;
+    /**
+     * Number of bytes before the lights of a state
+     */
+    public static final int HEADER_BYTES = 16;
+    /**
+     * Number of bytes of a move
+     */
+    public static final int MOVE_BYTES = 4;
+    /**
+     * Number of bytes before the cells of a delta
+     */
+    public static final int DELTA_HEADER_BYTES = 16;
+
+    static final byte MAGIC_L = 'L';
+    static final byte MAGIC_O = 'O';
+    static final byte MAGIC_D = 'D';
+    static final int WINNER = 1;
+
+    /**
+     * Private constructor, as this class only holds constants
+     */
+    private WireFormat() {
+    }
+
+    /**
+     * Calculates the size of an encoded state
+     *
+     * @param width  Number of columns in the board
+     * @param height Number of rows in the board
+     * @return Number of bytes of the state of a board of the provided dimensions
+     */
+    public static int encodedLength(int width, int height) {
+        return HEADER_BYTES + (int) (((long) width * height + 7) >>> 3);
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.loadtest;
+
+import lombok.Getter;
+
+/**
+ * A game created on the server for the load generator to play
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+@Getter
+public class Game {
+
+    private final String id;
+    private final int width;
+    private final int height;
+
+    /**
+     * Constructor
+     *
+     * @param id     The id of the game on the server
+     * @param width  Number of columns of its board
+     * @param height Number of rows of its board
+     */
+    public Game(String id, int width, int height) {
+        this.id = id;
+        this.width = width;
+        this.height = height;
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.loadtest;
+
+import lombok.Getter;
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The latencies recorded by an {@link OpenLoopDriver}, per operation and for all of them together, written as a table
+ * of throughput and percentiles followed by the full percentile distribution of each operation. Latencies are recorded
+ * in nanoseconds and reported in milliseconds.
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public class LoadReport {
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    @Getter
+    private final double rate;
+    @Getter
+    private final Duration duration;
+    /**
+     * Number of requests which were still unanswered when the driver stopped waiting for them
+     */
+    @Getter
+    private final long unanswered;
+    private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, Histogram> serviceTimes = new EnumMap<>(Operation.class);
+    private final Map<Operation, Long> errors = new EnumMap<>(Operation.class);
+
+    /**
+     * Constructor
+     *
+     * @param rate       Requests sent per second
+     * @param duration   Time during which requests were recorded
+     * @param unanswered Number of requests still unanswered when the driver stopped
+     */
+    public LoadReport(double rate, Duration duration, long unanswered) {
+        this.rate = rate;
+        this.duration = duration;
+        this.unanswered = unanswered;
+    }
+
+    /**
+     * Adds the results of an operation
+     *
+     * @param op      The operation
+     * @param latency Time from when each request was scheduled to its answer
+     * @param service Time from when each request was sent to its answer
+     * @param failed  Number of requests which failed or were answered with an error
+     */
+    public void add(Operation op, Histogram latency, Histogram service, long failed) {
+        latencies.put(op, latency);
+        serviceTimes.put(op, service);
+        errors.put(op, failed);
+    }
+
+    /**
+     * @return The latency of every operation together, from when each request was scheduled to its answer
+     */
+    public Histogram getLatency() {
+        return merge(latencies);
+    }
+
+    /**
+     * Returns the latency of an operation
+     *
+     * @param op The operation
+     * @return The time from when each request was scheduled to its answer, or null if the operation was not sent
+     */
+    public Histogram getLatency(Operation op) {
+        return latencies.get(op);
+    }
+
+    /**
+     * @return The number of requests of every operation which failed or were answered with an error
+     */
+    public long getErrors() {
+        return errors.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * Writes the report
+     *
+     * @param out The stream to write to
+     */
+    public void write(PrintStream out) {
+        writeSummary(out);
+        out.println();
+        out.println("Service time, from when each request was sent (not corrected for coordinated omission)");
+        table(out, serviceTimes);
+
+        for (Map.Entry<Operation, Histogram> entry : latencies.entrySet()) {
+            out.println();
+            out.println("Latency distribution of " + entry.getKey().key() + " (ms)");
+            entry.getValue().outputPercentileDistribution(out, NANOS_PER_MILLI);
+        }
+    }
+
+    /**
+     * Writes the table of throughput and latency percentiles of each operation
+     *
+     * @param out The stream to write to
+     */
+    public void writeSummary(PrintStream out) {
+        out.printf("Target rate %.1f requests/s for %d s, %d errors, %d unanswered%n",
+                rate, duration.getSeconds(), getErrors(), unanswered);
+        out.println("Latency, from when each request was scheduled (corrected for coordinated omission)");
+        table(out, latencies);
+    }
+
+    private void table(PrintStream out, Map<Operation, Histogram> histograms) {
+        out.printf("%-10s %10s %8s %12s", "operation", "requests", "errors", "requests/s");
+        for (double p : PERCENTILES) {
+            out.printf(" %10s", "p" + (p == Math.rint(p) ? String.valueOf((int) p) : String.valueOf(p)) + " ms");
+        }
+        out.printf(" %10s%n", "max ms");
+        for (Map.Entry<Operation, Histogram> entry : histograms.entrySet()) {
+            row(out, entry.getKey().key(), entry.getValue(), errors.get(entry.getKey()));
+        }
+        row(out, "all", merge(histograms), getErrors());
+    }
+
+    private void row(PrintStream out, String name, Histogram histogram, long failed) {
+        double seconds = duration.toNanos() / 1e9;
+        out.printf("%-10s %10d %8d %12.1f", name, histogram.getTotalCount(), failed,
+                histogram.getTotalCount() / seconds);
+        for (double p : PERCENTILES) {
+            out.printf(" %10.3f", histogram.getValueAtPercentile(p) / NANOS_PER_MILLI);
+        }
+        out.printf(" %10.3f%n", histogram.getMaxValue() / NANOS_PER_MILLI);
+    }
+
+    private static Histogram merge(Map<Operation, Histogram> histograms) {
+        Histogram all = new Histogram(3);
+        for (Histogram histogram : histograms.values()) {
+            all.add(histogram);
+        }
+        return all;
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.loadtest;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures the throughput and latency of a running server. A set of games is created, then an {@link OpenLoopDriver}
+ * plays a mix of moves, state reads and resets across them at a fixed rate, and the percentiles of the latency of each
+ * operation are printed and written to a report.
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public class LoadTest {
+
+    private static final Gson GSON = new Gson();
+
+    /**
+     * Entry point from the command line. Every option is of the form {@code --name=value}:
+     * <ul>
+     *     <li>{@code host} and {@code port} of the server, default {@code localhost} and {@code 7000}</li>
+     *     <li>{@code rate}, the requests sent per second, default 1000</li>
+     *     <li>{@code duration} and {@code warmup} in seconds, default 30 and 5, only requests scheduled after the
+     *     warmup are recorded</li>
+     *     <li>{@code games}, the number of games played, default 100, of {@code width} by {@code height} cells,
+     *     default 5x5</li>
+     *     <li>{@code mix}, the relative weight of each operation, default {@code update=80,state=15,reset=5}</li>
+     *     <li>{@code seed} of the requests, default 1, so runs with the same options send the same requests</li>
+     *     <li>{@code report}, the file the full report is written to, default {@code loadtest-report.txt}</li>
+     * </ul>
+     *
+     * @param args The options
+     * @throws IOException              if the games cannot be created or the report cannot be written
+     * @throws InterruptedException     if interrupted while creating the games
+     * @throws IllegalArgumentException if an option is malformed
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int split = arg.indexOf('=');
+            if (!arg.startsWith("--") || split < 3)
+                throw new IllegalArgumentException("Expected --name=value but was " + arg);
+            options.put(arg.substring(2, split), arg.substring(split + 1));
+        }
+        String base = "http://" + options.getOrDefault("host", "localhost") + ":"
+                + options.getOrDefault("port", "7000");
+        double rate = Double.parseDouble(options.getOrDefault("rate", "1000"));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "30")));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "5")));
+        int count = Integer.parseInt(options.getOrDefault("games", "100"));
+        int width = Integer.parseInt(options.getOrDefault("width", "5"));
+        int height = Integer.parseInt(options.getOrDefault("height", "5"));
+        Map<Operation, Integer> mix = parseMix(options.getOrDefault("mix", "update=80,state=15,reset=5"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+        Path file = Path.of(options.getOrDefault("report", "loadtest-report.txt"));
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(20))
+                .build();
+        List<Game> games = createGames(client, base, count, width, height);
+
+        System.out.printf("Sending %.1f requests/s to %d games for %d s after a %d s warmup%n",
+                rate, count, duration.getSeconds(), warmup.getSeconds());
+        LoadReport report = new OpenLoopDriver(client, base, games, mix).run(rate, warmup, duration, seed);
+
+        report.writeSummary(System.out);
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+            out.printf("Server %s, %d games of %dx%d, mix %s, seed %d%n", base, count, width, height,
+                    options.getOrDefault("mix", "update=80,state=15,reset=5"), seed);
+            report.write(out);
+        }
+        System.out.println("Report written to " + file.toAbsolutePath());
+    }
+
+    /**
+     * Reads a mix of the form {@code update=80,state=15,reset=5}
+     *
+     * @param mix The mix
+     * @return The weight of each operation named
+     * @throws IllegalArgumentException if the mix is malformed or names an unknown operation
+     */
+    static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split("=");
+            if (pair.length != 2)
+                throw new IllegalArgumentException("Expected operation=weight but was " + part);
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight < 0)
+                throw new IllegalArgumentException("The weight of " + pair[0] + " cannot be negative");
+            weights.put(Operation.of(pair[0].trim()), weight);
+        }
+        return weights;
+    }
+
+    /**
+     * Creates the games to play, one after another
+     *
+     * @param client The client sending the requests
+     * @param base   The address of the server
+     * @param count  Number of games
+     * @param width  Number of columns of each board
+     * @param height Number of rows of each board
+     * @return The games
+     * @throws IOException          if the server refuses a game
+     * @throws InterruptedException if interrupted while waiting for the server
+     */
+    private static List<Game> createGames(HttpClient client, String base, int count, int width, int height)
+            throws IOException, InterruptedException {
+        List<Game> games = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(base + "/api/games?width=" + width + "&height=" + height))
+                    .timeout(Duration.ofSeconds(30))
+                    .POST(HttpRequest.BodyPublishers.noBody())
+                    .build();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 201)
+                throw new IOException("Could not create a game: " + response.body());
+            games.add(new Game(GSON.fromJson(response.body(), JsonObject.class).get("id").getAsString(),
+                    width, height));
+        }
+        return games;
+    }
+}
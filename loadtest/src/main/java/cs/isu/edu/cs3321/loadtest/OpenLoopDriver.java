@@ -0,0 +1,158 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.loadtest;
+
+import org.HdrHistogram.Recorder;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends requests at a fixed rate whatever the server does, as a population of independent users would. Request i is
+ * scheduled for {@code i / rate} seconds after the start and sent as soon as possible after that time without waiting
+ * for earlier answers, so a server which stalls faces a growing queue instead of a generator which politely stops
+ * sending.
+ * <p>
+ * The latency of a request is measured from the time it was scheduled, not the time it was sent, so time spent queued
+ * behind a stall of the server or of the generator itself is counted. This avoids the coordinated omission of closed
+ * loop tools, which only time the requests they managed to send. The time from sending to answer, the service time,
+ * is recorded as well for comparison.
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public class OpenLoopDriver {
+
+    private static final long DRAIN_TIMEOUT = TimeUnit.SECONDS.toNanos(30);
+
+    private final HttpClient client;
+    private final String base;
+    private final List<Game> games;
+    private final Operation[] operations;
+    private final int[] cumulative;
+
+    /**
+     * Constructor
+     *
+     * @param client The client sending the requests
+     * @param base   The address of the server, such as {@code http://localhost:7000}
+     * @param games  The games the requests are spread across, each equally likely
+     * @param mix    The relative weight of each operation, operations left out are not sent
+     */
+    public OpenLoopDriver(HttpClient client, String base, List<Game> games, Map<Operation, Integer> mix) {
+        if (games.isEmpty())
+            throw new IllegalArgumentException("At least one game is needed");
+        this.client = client;
+        this.base = base;
+        this.games = games;
+        this.operations = mix.keySet().toArray(new Operation[0]);
+        this.cumulative = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += mix.get(operations[i]);
+            cumulative[i] = total;
+        }
+        if (total <= 0)
+            throw new IllegalArgumentException("The mix must give some operation a positive weight");
+    }
+
+    /**
+     * Drives the server and waits for the last answers
+     *
+     * @param rate     Requests sent per second
+     * @param warmup   Time spent sending before any request is recorded
+     * @param duration Time during which requests are recorded, after the warmup
+     * @param seed     Seed of the choice of operations, games and cells, the same seed sends the same requests
+     * @return The latencies of the requests scheduled after the warmup
+     */
+    public LoadReport run(double rate, Duration warmup, Duration duration, long seed) {
+        if (rate <= 0)
+            throw new IllegalArgumentException("The rate must be positive");
+        Map<Operation, Recorder> latency = new EnumMap<>(Operation.class);
+        Map<Operation, Recorder> service = new EnumMap<>(Operation.class);
+        Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+        for (Operation op : operations) {
+            latency.put(op, new Recorder(3));
+            service.put(op, new Recorder(3));
+            errors.put(op, new LongAdder());
+        }
+
+        Random random = new Random(seed);
+        AtomicLong outstanding = new AtomicLong();
+        double interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        for (long i = 0; ; i++) {
+            long scheduled = start + (long) (i * interval);
+            if (scheduled - end >= 0)
+                break;
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0)
+                LockSupport.parkNanos(wait);
+
+            Operation op = pick(random);
+            HttpRequest request = op.request(base, games.get(random.nextInt(games.size())), random);
+            boolean measured = scheduled - measureFrom >= 0;
+            outstanding.incrementAndGet();
+            long sent = System.nanoTime();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, ex) -> {
+                long done = System.nanoTime();
+                if (measured) {
+                    if (ex != null || response.statusCode() >= 400) {
+                        errors.get(op).increment();
+                    } else {
+                        latency.get(op).recordValue(done - scheduled);
+                        service.get(op).recordValue(done - sent);
+                    }
+                }
+                outstanding.decrementAndGet();
+            });
+        }
+
+        long drainFrom = System.nanoTime();
+        while (outstanding.get() > 0 && System.nanoTime() - drainFrom < DRAIN_TIMEOUT) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+
+        LoadReport report = new LoadReport(rate, duration, outstanding.get());
+        for (Operation op : operations) {
+            report.add(op, latency.get(op).getIntervalHistogram(), service.get(op).getIntervalHistogram(),
+                    errors.get(op).sum());
+        }
+        return report;
+    }
+
+    private Operation pick(Random random) {
+        int roll = random.nextInt(cumulative[cumulative.length - 1]);
+        int i = 0;
+        while (roll >= cumulative[i]) {
+            i++;
+        }
+        return operations[i];
+    }
+}
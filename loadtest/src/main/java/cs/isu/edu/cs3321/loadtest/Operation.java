@@ -0,0 +1,115 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.loadtest;
+
+import cs.isu.edu.cs3321.lightsout.WireEncoder;
+import cs.isu.edu.cs3321.lightsout.WireFormat;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.Random;
+
+/**
+ * The requests made by the load generator, in the same shape as those of the client's {@code Connection}: binary moves
+ * and states negotiated through the {@code Content-Type} and {@code Accept} headers, against the routes of one game.
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public enum Operation {
+
+    /**
+     * Selects a random cell of the game, {@code POST /api/games/{id}/update}
+     */
+    UPDATE("update") {
+        @Override
+        HttpRequest request(String base, Game game, Random random) {
+            byte[] move = WireEncoder.encodeMove(random.nextInt(game.getWidth()), random.nextInt(game.getHeight()));
+            return builder(base, game, "update")
+                    .header("Content-Type", WireFormat.MOVE_TYPE)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(move))
+                    .build();
+        }
+    },
+    /**
+     * Reads the state of the game, {@code GET /api/games/{id}/state}
+     */
+    STATE("state") {
+        @Override
+        HttpRequest request(String base, Game game, Random random) {
+            return builder(base, game, "state").GET().build();
+        }
+    },
+    /**
+     * Resets the game to a new board, {@code GET /api/games/{id}/reset}
+     */
+    RESET("reset") {
+        @Override
+        HttpRequest request(String base, Game game, Random random) {
+            return builder(base, game, "reset").GET().build();
+        }
+    };
+
+    private static final String ACCEPT = WireFormat.STATE_TYPE + ", application/json";
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private final String key;
+
+    Operation(String key) {
+        this.key = key;
+    }
+
+    /**
+     * @return The name of the operation as used in mixes and reports
+     */
+    public String key() {
+        return key;
+    }
+
+    /**
+     * Finds the operation of a name
+     *
+     * @param key The name of the operation, as returned by {@link #key()}
+     * @return The operation
+     * @throws IllegalArgumentException if no operation has the name
+     */
+    public static Operation of(String key) {
+        for (Operation op : values()) {
+            if (op.key.equalsIgnoreCase(key))
+                return op;
+        }
+        throw new IllegalArgumentException("Unknown operation " + key);
+    }
+
+    /**
+     * Builds the request of this operation
+     *
+     * @param base   The address of the server, such as {@code http://localhost:7000}
+     * @param game   The game to act on
+     * @param random The random generator choosing the cells of moves
+     * @return The request
+     */
+    abstract HttpRequest request(String base, Game game, Random random);
+
+    private static HttpRequest.Builder builder(String base, Game game, String route) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(base + "/api/games/" + game.getId() + "/" + route))
+                .timeout(TIMEOUT)
+                .header("Accept", ACCEPT);
+    }
+}
@@ -0,0 +1,218 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.server;
+
+import cs.isu.edu.cs3321.lightsout.Board;
+import cs.isu.edu.cs3321.lightsout.DifficultyGenerator;
+import cs.isu.edu.cs3321.lightsout.PackedBoard;
+import cs.isu.edu.cs3321.lightsout.UnavailableException;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Boards of every difficulty generated ahead of time, so a reset to a hard board takes no longer than one to an easy
+ * board. Each size of board and difficulty has its own pool, which is filled on the first use of the size and topped
+ * up by a set of background workers whenever a board taken from it leaves it half empty. Boards are never generated on
+ * the thread of the caller: a pool which runs dry serves a board of the nearest difficulty of the requested band which
+ * has one, and when the whole band is dry the caller waits up to {@link #WAIT_MILLIS} for the refill.
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public class BoardPool implements AutoCloseable {
+
+    /**
+     * Number of boards kept per size and difficulty unless set otherwise
+     */
+    public static final int DEFAULT_CAPACITY = 32;
+    /**
+     * Longest time, in milliseconds, a caller waits for a board when every pool of its band is empty
+     */
+    public static final long WAIT_MILLIS = 2000;
+
+    private final int capacity;
+    private final Supplier<? extends Random> random;
+    private final ExecutorService workers;
+    private final Map<Long, DifficultyGenerator> generators = new ConcurrentHashMap<>();
+    private final Map<Long, Tier> tiers = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param capacity Number of boards kept per size and difficulty
+     * @param threads  Number of background workers filling the pools
+     * @param random   Source of the random generator of each thread generating boards
+     */
+    public BoardPool(int capacity, int threads, Supplier<? extends Random> random) {
+        if (capacity < 1 || threads < 1)
+            throw new IllegalArgumentException("A pool needs a capacity and at least one worker");
+        this.capacity = capacity;
+        this.random = random;
+        AtomicInteger count = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "board-pool-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the generator of a size of board, creating it and starting to fill every pool of the size on first use
+     *
+     * @param width  Number of columns of the boards
+     * @param height Number of rows of the boards
+     * @return The shared generator of the size
+     * @throws IllegalArgumentException if boards of the size cannot be generated by difficulty
+     */
+    public DifficultyGenerator generator(int width, int height) {
+        long size = (long) width << 32 | height;
+        DifficultyGenerator generator = generators.get(size);
+        if (generator != null)
+            return generator;
+        generator = generators.computeIfAbsent(size, key -> new DifficultyGenerator(width, height, random));
+        for (int difficulty = 1; difficulty <= generator.getMaxDifficulty(); difficulty++) {
+            tier(generator, difficulty).refill();
+        }
+        return generator;
+    }
+
+    /**
+     * Takes a board whose minimal solution needs a number of presses in a band, each number being equally likely
+     * while the pools keep up with the resets
+     *
+     * @param width  Number of columns of the board
+     * @param height Number of rows of the board
+     * @param min    The fewest presses, at least 1
+     * @param max    The most presses, at most the hardest difficulty of the size
+     * @return A new board, which no one else holds
+     * @throws IllegalArgumentException if boards of the size cannot be generated by difficulty, or the band is empty
+     *                                  or out of range
+     * @throws UnavailableException     if no board of the band is ready within {@link #WAIT_MILLIS}
+     */
+    public Board take(int width, int height, int min, int max) {
+        DifficultyGenerator generator = generator(width, height);
+        if (min < 1 || max > generator.getMaxDifficulty() || min > max)
+            throw new IllegalArgumentException("Difficulty must be between 1 and " + generator.getMaxDifficulty());
+        int difficulty = min + random.get().nextInt(max - min + 1);
+
+        Long bits = tier(generator, difficulty).poll();
+        for (int offset = 1; bits == null && offset <= max - min; offset++) {
+            if (difficulty - offset >= min)
+                bits = tier(generator, difficulty - offset).poll();
+            if (bits == null && difficulty + offset <= max)
+                bits = tier(generator, difficulty + offset).poll();
+        }
+        if (bits == null)
+            bits = tier(generator, difficulty).await();
+        PackedBoard board = new PackedBoard(width, height);
+        board.setBits(bits);
+        return board;
+    }
+
+    /**
+     * Stops the background workers
+     */
+    @Override
+    public void close() {
+        workers.shutdownNow();
+    }
+
+    private Tier tier(DifficultyGenerator generator, int difficulty) {
+        long key = (long) generator.getWidth() << 40 | (long) generator.getHeight() << 16 | difficulty;
+        return tiers.computeIfAbsent(key, k -> new Tier(generator, difficulty));
+    }
+
+    /**
+     * The pool of boards of one size and difficulty
+     */
+    private class Tier {
+
+        private final DifficultyGenerator generator;
+        private final int difficulty;
+        private final ArrayBlockingQueue<Long> boards = new ArrayBlockingQueue<>(capacity);
+        private final AtomicBoolean filling = new AtomicBoolean();
+
+        Tier(DifficultyGenerator generator, int difficulty) {
+            this.generator = generator;
+            this.difficulty = difficulty;
+        }
+
+        /**
+         * Takes a board from this pool, asking for a refill if it leaves the pool half empty
+         *
+         * @return The lights of the board, or null if the pool is empty
+         */
+        Long poll() {
+            Long bits = boards.poll();
+            if (boards.size() <= capacity / 2)
+                refill();
+            return bits;
+        }
+
+        /**
+         * Waits for a board to be added to this pool
+         *
+         * @return The lights of the board
+         * @throws UnavailableException if no board is added within {@link #WAIT_MILLIS}, or the caller is interrupted
+         */
+        long await() {
+            refill();
+            try {
+                Long bits = boards.poll(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                if (bits == null)
+                    throw new UnavailableException("No boards of difficulty " + difficulty + " are ready, try again");
+                return bits;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new UnavailableException("Interrupted while waiting for a board", ex);
+            }
+        }
+
+        /**
+         * Asks a worker to fill this pool, unless one already is
+         */
+        void refill() {
+            if (!filling.compareAndSet(false, true))
+                return;
+            try {
+                workers.execute(this::fill);
+            } catch (RejectedExecutionException ex) {
+                filling.set(false);
+            }
+        }
+
+        private void fill() {
+            try {
+                while (boards.remainingCapacity() > 0 && !Thread.currentThread().isInterrupted()) {
+                    boards.offer(generator.generate(difficulty));
+                }
+            } finally {
+                filling.set(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,451 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.server;
+
+import cs.isu.edu.cs3321.lightsout.BoardGenerator;
+import cs.isu.edu.cs3321.lightsout.ConcurrentGame;
+import cs.isu.edu.cs3321.lightsout.GameSnapshot;
+import cs.isu.edu.cs3321.lightsout.UnavailableException;
+import cs.isu.edu.cs3321.lightsout.WireDecoder;
+import cs.isu.edu.cs3321.lightsout.WireEncoder;
+import cs.isu.edu.cs3321.lightsout.WireFormat;
+import io.javalin.http.BadRequestResponse;
+import io.javalin.http.ConflictResponse;
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Membership of this server in a cluster of servers, each of which holds the games whose ids it owns on a
+ * {@link HashRing} of the live nodes. A request for a game held elsewhere is forwarded to its owner and the answer
+ * passed back, so clients may talk to any node. Nodes share nothing but the games they hand to each other.
+ * <p>
+ * The nodes talk over a small internal HTTP protocol:
+ * <ul>
+ *     <li>{@code POST /internal/cluster/join} with the address of a new node as the body, answered with the members
+ *     known to the receiver, one {@code host:port} per line</li>
+ *     <li>{@code POST /internal/cluster/leave} with the address of a node which is shutting down</li>
+ *     <li>{@code GET /internal/cluster/members}, polled by every node as a heartbeat, through which the members learn
+ *     of each other</li>
+ *     <li>{@code PUT /internal/games/{id}} with a state in the binary form of {@link WireFormat}, handing a game to its
+ *     new owner</li>
+ * </ul>
+ * A node which misses {@link #MAX_MISSED} heartbeats in a row is dropped, and ignored by the heartbeats of others for a
+ * while so it is not brought back by a node which has not noticed yet. Whenever the members change, every node hands
+ * the games it holds but no longer owns to their new owners. A node which leaves hands over all of its games first,
+ * but the games of a node which fails are lost unless it is restarted from its journal.
+ * <p>
+ * A node keeps answering for a game it holds even when the ring says otherwise, so a game is served throughout a
+ * rebalance by whichever node has it. While a game is being handed over it is frozen, and changes to it are answered
+ * with 503 until the new owner has it. Forwarded requests carry the {@value #FORWARDED} header and are never forwarded
+ * again.
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public class Cluster implements AutoCloseable {
+
+    /**
+     * Header marking a request forwarded by another node, holding the address of that node
+     */
+    static final String FORWARDED = "X-LO-Forwarded";
+
+    /**
+     * Number of heartbeats in a row a node may miss before it is dropped
+     */
+    static final int MAX_MISSED = 3;
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+    private static final long DEPARTED_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    /**
+     * Address of this node as the other nodes reach it, {@code host:port}
+     */
+    @Getter
+    private final String self;
+    private final GameRegistry registry;
+    private final BoardGenerator generator;
+    private final GameListener listener;
+    private final HttpClient client;
+    private final Set<String> members = ConcurrentHashMap.newKeySet();
+    private final Map<String, Integer> missed = new ConcurrentHashMap<>();
+    private final Map<String, Long> departed = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "cluster-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile HashRing ring;
+
+    /**
+     * Constructor, the node is alone in its ring until it joins the others
+     *
+     * @param self      Address of this node as the other nodes reach it, {@code host:port}
+     * @param registry  The registry holding the games of this node
+     * @param generator Generator of the boards of the games handed to this node
+     * @param listener  Told of the games handed to this node, as if they were created here
+     */
+    public Cluster(String self, GameRegistry registry, BoardGenerator generator, GameListener listener) {
+        this.self = self;
+        this.registry = registry;
+        this.generator = generator;
+        this.listener = listener;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(TIMEOUT)
+                .build();
+        members.add(self);
+        ring = new HashRing(members);
+        registry.setOwnership(this::owns);
+    }
+
+    /**
+     * Joins the cluster through any of its nodes, and starts the heartbeats
+     *
+     * @param seeds    Addresses of nodes already in the cluster, those which cannot be reached or are this node are
+     *                 skipped, so the first node may list itself or nodes started later
+     * @param interval Time between heartbeats
+     */
+    public void join(Collection<String> seeds, Duration interval) {
+        for (String seed : seeds) {
+            if (seed.equals(self))
+                continue;
+            try {
+                merge(send("POST", seed, "/internal/cluster/join", self));
+                members.add(seed);
+            } catch (IOException ex) {
+                // not started yet, it will join through this node or another
+            }
+        }
+        rebalance();
+        heartbeat.scheduleWithFixedDelay(this::beat, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Leaves the cluster, handing every game of this node to its new owner and telling the other nodes. The node
+     * creates no more games, but keeps serving those it holds until they are handed off, so it must be called before
+     * the server stops.
+     */
+    public synchronized void leave() {
+        // no new games from here on, requests to create one are answered with 503 while the others are handed off
+        registry.setOwnership(id -> false);
+        heartbeat.shutdownNow();
+        members.remove(self);
+        if (members.isEmpty())
+            return;
+        ring = new HashRing(members);
+        handOff();
+        for (String member : members) {
+            try {
+                send("POST", member, "/internal/cluster/leave", self);
+            } catch (IOException ex) {
+                // it will notice when this node stops answering its heartbeats
+            }
+        }
+    }
+
+    /**
+     * Leaves the cluster
+     */
+    @Override
+    public void close() {
+        leave();
+    }
+
+    /**
+     * @return The addresses of the nodes in the ring of this node
+     */
+    public List<String> nodes() {
+        return ring.nodes();
+    }
+
+    /**
+     * Tests whether this node owns a game
+     *
+     * @param id The id of the game
+     * @return True if the ring places the game on this node
+     */
+    public boolean owns(long id) {
+        return ring.owner(id).equals(self);
+    }
+
+    /**
+     * Wraps the handler of a route of a single game, so requests for games held by other nodes are forwarded to them
+     *
+     * @param handler The handler of the route, run when this node holds the game, owns it or the request was
+     *                forwarded here
+     * @return The wrapping handler
+     */
+    public Handler routed(Handler handler) {
+        return ctx -> {
+            long id = GameRegistry.parse(ctx.pathParam("id"));
+            if (id < 0 || ctx.header(FORWARDED) != null || registry.get(id) != null) {
+                handler.handle(ctx);
+                return;
+            }
+            String owner = ring.owner(id);
+            if (owner.equals(self))
+                handler.handle(ctx);
+            else
+                forward(ctx, owner);
+        };
+    }
+
+    /**
+     * Answers with the members known to this node, one address per line
+     *
+     * @param ctx The request context
+     */
+    public void members(Context ctx) {
+        ctx.contentType("text/plain").result(String.join("\n", members));
+    }
+
+    /**
+     * Adds the node named in the body to the cluster and answers with the members known to this node
+     *
+     * @param ctx The request context
+     */
+    public void joined(Context ctx) {
+        String node = address(ctx.body());
+        departed.remove(node);
+        missed.remove(node);
+        if (members.add(node))
+            rebalance();
+        members(ctx);
+    }
+
+    /**
+     * Removes the node named in the body from the cluster
+     *
+     * @param ctx The request context
+     */
+    public void left(Context ctx) {
+        String node = address(ctx.body());
+        departed.put(node, System.nanoTime());
+        if (members.remove(node))
+            rebalance();
+        ctx.status(204);
+    }
+
+    /**
+     * Takes over a game handed to this node by its previous owner
+     *
+     * @param ctx The request context
+     */
+    public void received(Context ctx) {
+        long id = GameRegistry.parse(ctx.pathParam("id"));
+        if (id < 0)
+            throw new BadRequestResponse("Malformed game id");
+        if (registry.get(id) != null)
+            throw new ConflictResponse("Game is already held here");
+        GameSnapshot snapshot = WireDecoder.decode(ctx.bodyAsBytes());
+        GameSession session;
+        try {
+            session = registry.restore(id, new ConcurrentGame(snapshot, generator));
+        } catch (UnavailableException ex) {
+            throw ex;
+        } catch (IllegalStateException ex) {
+            throw new ConflictResponse(ex.getMessage());
+        }
+        listener.created(session, snapshot);
+        ctx.status(204);
+    }
+
+    /**
+     * Sends a request on to the node holding its game, and passes the answer back
+     *
+     * @param ctx  The request context
+     * @param node The address of the node
+     * @throws UnavailableException if the node cannot be reached
+     */
+    private void forward(Context ctx, String node) {
+        String query = ctx.queryString();
+        byte[] body = ctx.bodyAsBytes();
+        HttpRequest.Builder request = HttpRequest.newBuilder()
+                .uri(URI.create("http://" + node + ctx.path() + (query == null ? "" : "?" + query)))
+                .timeout(TIMEOUT)
+                .header(FORWARDED, self)
+                .method(ctx.method(), body.length == 0 ? HttpRequest.BodyPublishers.noBody() :
+                        HttpRequest.BodyPublishers.ofByteArray(body));
+        for (String header : new String[]{"Content-Type", "Accept", "If-None-Match"}) {
+            String value = ctx.header(header);
+            if (value != null)
+                request.header(header, value);
+        }
+
+        HttpResponse<byte[]> response;
+        try {
+            response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException ex) {
+            throw new UnavailableException("Node " + node + " is unavailable");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new UnavailableException("Interrupted forwarding to " + node);
+        }
+        ctx.status(response.statusCode());
+        response.headers().firstValue("Content-Type").ifPresent(ctx::contentType);
+        for (String header : new String[]{"Vary", "ETag", "Cache-Control"}) {
+            response.headers().firstValue(header).ifPresent(value -> ctx.header(header, value));
+        }
+        ctx.result(response.body());
+    }
+
+    /**
+     * Polls every other member, learning of the members they know and dropping those which stop answering
+     */
+    private void beat() {
+        long now = System.nanoTime();
+        departed.values().removeIf(time -> now - time > DEPARTED_NANOS);
+        boolean changed = false;
+        for (String member : new ArrayList<>(members)) {
+            if (member.equals(self))
+                continue;
+            try {
+                changed |= merge(send("GET", member, "/internal/cluster/members", null));
+                missed.remove(member);
+            } catch (IOException ex) {
+                if (missed.merge(member, 1, Integer::sum) >= MAX_MISSED) {
+                    missed.remove(member);
+                    departed.put(member, now);
+                    changed |= members.remove(member);
+                }
+            }
+        }
+        if (changed)
+            rebalance();
+    }
+
+    /**
+     * Adds the members listed by another node, besides those which recently departed
+     *
+     * @param listing The addresses, one per line
+     * @return True if any member was added
+     */
+    private boolean merge(String listing) {
+        boolean changed = false;
+        for (String line : listing.split("\n")) {
+            String node = line.trim();
+            if (!node.isEmpty() && !departed.containsKey(node))
+                changed |= members.add(node);
+        }
+        return changed;
+    }
+
+    /**
+     * Rebuilds the ring from the members and hands off the games this node no longer owns
+     */
+    private synchronized void rebalance() {
+        if (!members.contains(self))
+            return;
+        ring = new HashRing(members);
+        handOff();
+    }
+
+    /**
+     * Hands every game held by this node which another node owns to that node. Each game is frozen before its state is
+     * sent, so a change made meanwhile is refused rather than lost, and it stays registered and served here until the
+     * new owner has it. A game which cannot be handed over is thawed and kept here.
+     */
+    private void handOff() {
+        List<GameSession> leaving = new ArrayList<>();
+        registry.forEach(session -> {
+            if (!session.isPinned() && !ring.owner(session.getId()).equals(self))
+                leaving.add(session);
+        });
+        for (GameSession session : leaving) {
+            ConcurrentGame game = session.getGame();
+            GameSnapshot snapshot = game.freeze();
+            String owner = ring.owner(session.getId());
+            try {
+                HttpRequest request = HttpRequest.newBuilder()
+                        .uri(URI.create("http://" + owner + "/internal/games/" + session.getKey()))
+                        .timeout(TIMEOUT)
+                        .header("Content-Type", WireFormat.STATE_TYPE)
+                        .PUT(HttpRequest.BodyPublishers.ofByteArray(WireEncoder.encode(snapshot)))
+                        .build();
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 204) {
+                    registry.remove(session.getId());
+                    continue;
+                }
+            } catch (IOException ex) {
+                // kept below
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            game.thaw();
+        }
+    }
+
+    /**
+     * Sends a request of the internal protocol
+     *
+     * @param method The method of the request
+     * @param node   The address of the node to send to
+     * @param path   The path of the route
+     * @param body   The body, or null for none
+     * @return The body of the answer
+     * @throws IOException if the node cannot be reached or does not answer with success
+     */
+    private String send(String method, String node, String path, String body) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://" + node + path))
+                .timeout(TIMEOUT)
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() :
+                        HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() / 100 != 2)
+                throw new IOException(node + " answered " + response.statusCode());
+            return response.body();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", ex);
+        }
+    }
+
+    /**
+     * Checks an address sent by another node
+     *
+     * @param body The body of the request
+     * @return The address
+     * @throws BadRequestResponse if the body is not of the form {@code host:port}
+     */
+    private static String address(String body) {
+        String node = body.trim();
+        int colon = node.lastIndexOf(':');
+        if (colon <= 0 || colon == node.length() - 1 || node.contains("\n"))
+            throw new BadRequestResponse("Expected host:port but was " + node);
+        return node;
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.server;
+
+import cs.isu.edu.cs3321.lightsout.GameSnapshot;
+import cs.isu.edu.cs3321.lightsout.WireEncoder;
+import cs.isu.edu.cs3321.lightsout.WireFormat;
+import lombok.Getter;
+
+import java.security.SecureRandom;
+
+/**
+ * The serialized forms of one version of a game, kept by its session so a state which has not changed since it was last
+ * read is answered without serializing it again. Each form is written on first use. Only boards whose JSON takes at
+ * most {@link #MAX_CACHED} bytes are kept, larger ones are serialized on every read.
+ * <p>
+ * Every form of a version is also named by an entity tag derived from the version, so clients which already hold that
+ * version are answered with {@code 304 Not Modified} and nothing is serialized at all.
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+final class EncodedState {
+
+    /**
+     * Largest JSON form, in bytes, which a session keeps
+     */
+    static final int MAX_CACHED = 8192;
+
+    /**
+     * Random name of this run of the server, so tags handed out before a restart, when versions start over, never
+     * match tags handed out after it
+     */
+    static final String EPOCH = Long.toString(new SecureRandom().nextLong() & Long.MAX_VALUE, 36);
+
+    @Getter
+    private final GameSnapshot snapshot;
+    private volatile byte[] json;
+    private volatile byte[] binary;
+
+    /**
+     * Constructor
+     *
+     * @param snapshot The state whose forms are kept
+     */
+    EncodedState(GameSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * @return The state in the JSON form of a {@code GameState}
+     */
+    byte[] json() {
+        byte[] bytes = json;
+        if (bytes == null)
+            json = bytes = MoveBuffer.json(snapshot);
+        return bytes;
+    }
+
+    /**
+     * @return The state in the binary form of {@link WireFormat}
+     */
+    byte[] binary() {
+        byte[] bytes = binary;
+        if (bytes == null)
+            binary = bytes = WireEncoder.encode(snapshot);
+        return bytes;
+    }
+
+    /**
+     * Tests whether the forms of states of a size are kept
+     *
+     * @param width  Number of columns in the board
+     * @param height Number of rows in the board
+     * @return True if the JSON form of such a state fits in {@link #MAX_CACHED} bytes
+     */
+    static boolean cached(int width, int height) {
+        return MoveBuffer.jsonLength(width, height) <= MAX_CACHED;
+    }
+
+    /**
+     * Estimates the heap held by the forms of a state once both are written
+     *
+     * @param width  Number of columns in the board
+     * @param height Number of rows in the board
+     * @return The approximate footprint in bytes, or 0 if the forms of such a state are not kept
+     */
+    static long estimateBytes(int width, int height) {
+        if (!cached(width, height))
+            return 0;
+        return 64 + MoveBuffer.jsonLength(width, height) + WireFormat.encodedLength(width, height);
+    }
+
+    /**
+     * Names a form of a version of a game. The tag holds the id of the game, the {@link #EPOCH} of this run and the
+     * version, so it changes with every change to the game, as its version does, and is never reused by another game
+     * or after a restart.
+     *
+     * @param session  The game
+     * @param snapshot The state
+     * @param binary   True for the binary form, false for JSON
+     * @return The quoted entity tag
+     */
+    static String etag(GameSession session, GameSnapshot snapshot, boolean binary) {
+        return "\"" + session.getKey() + "." + EPOCH + "." + snapshot.getVersion() + (binary ? "-b\"" : "-j\"");
+    }
+
+    /**
+     * Tests whether an {@code If-None-Match} header names an entity tag, using the weak comparison
+     *
+     * @param ifNoneMatch The value of the header, or null if the request has none
+     * @param etag        The quoted entity tag of the current form
+     * @return True if the header is {@code *} or lists the tag, with or without the {@code W/} prefix
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null)
+            return false;
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/"))
+                tag = tag.substring(2);
+            if (tag.equals("*") || tag.equals(etag))
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,205 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.server;
+
+import cs.isu.edu.cs3321.lightsout.Board;
+import cs.isu.edu.cs3321.lightsout.BoardDelta;
+import cs.isu.edu.cs3321.lightsout.GameSnapshot;
+import cs.isu.edu.cs3321.lightsout.UnavailableException;
+import cs.isu.edu.cs3321.lightsout.WireDecoder;
+import cs.isu.edu.cs3321.lightsout.WireEncoder;
+import cs.isu.edu.cs3321.lightsout.WireFormat;
+import io.javalin.websocket.WsBinaryMessageContext;
+import io.javalin.websocket.WsConfig;
+import io.javalin.websocket.WsContext;
+import org.eclipse.jetty.websocket.api.StatusCode;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * WebSocket channel of the games. A client connected to a game receives its state on connecting, and then a
+ * {@link BoardDelta} for every move and the full state after every reset, whichever connection or request made them.
+ * Clients send moves as binary frames in the form of {@link WireFormat}, and an empty frame to receive the full state
+ * again after missing a version. Moves received here are reported to the listener, which passes them back to this
+ * channel along with every other change.
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public class GameChannel implements GameListener {
+
+    private final GameRegistry registry;
+    private final GameListener listener;
+    private final ConcurrentHashMap<Long, Set<WsContext>> subscribers = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param registry The registry holding the games hosted by this server
+     * @param listener Told of every move received by this channel
+     */
+    public GameChannel(GameRegistry registry, GameListener listener) {
+        this.registry = registry;
+        this.listener = listener;
+    }
+
+    /**
+     * Registers the handlers of this channel with a WebSocket route
+     *
+     * @param ws The configuration of the route
+     */
+    public void configure(WsConfig ws) {
+        ws.onConnect(this::connect);
+        ws.onBinaryMessage(this::message);
+        ws.onClose(this::disconnect);
+        ws.onError(this::disconnect);
+    }
+
+    /**
+     * Sends the delta of a move to every client following the game
+     *
+     * @param session The game the move was made in
+     * @param x       The selected column
+     * @param y       The selected row
+     * @param after   The state of the game immediately after the move
+     */
+    @Override
+    public void moved(GameSession session, int x, int y, GameSnapshot after) {
+        Set<WsContext> targets = subscribers.get(session.getId());
+        if (targets != null)
+            broadcast(targets, WireEncoder.encodeDelta(BoardDelta.ofPress(after, x, y)));
+    }
+
+    /**
+     * Sends the delta of a change made up of several moves to every client following the game
+     *
+     * @param session The game the change was made in
+     * @param moves   The selected cells in the order they were sent, each an [x, y] pair
+     * @param toggles Board whose lights are on where the change toggled the game
+     * @param after   The state of the game immediately after the change
+     */
+    @Override
+    public void toggled(GameSession session, int[][] moves, Board toggles, GameSnapshot after) {
+        Set<WsContext> targets = subscribers.get(session.getId());
+        if (targets != null)
+            broadcast(targets, WireEncoder.encodeDelta(BoardDelta.ofToggles(after, toggles)));
+    }
+
+    /**
+     * Sends the full state of a game to every client following it, used when a change is not a single move
+     *
+     * @param session The game which changed
+     * @param after   The state of the game after the change
+     */
+    @Override
+    public void changed(GameSession session, GameSnapshot after) {
+        Set<WsContext> targets = subscribers.get(session.getId());
+        if (targets != null)
+            broadcast(targets, WireEncoder.encode(after));
+    }
+
+    /**
+     * Disconnects every client following a game which has ended
+     *
+     * @param session The game which ended
+     */
+    @Override
+    public void ended(GameSession session) {
+        Set<WsContext> targets = subscribers.remove(session.getId());
+        if (targets != null)
+            targets.forEach(ctx -> ctx.session.close(StatusCode.NORMAL, "Game ended"));
+    }
+
+    /**
+     * Subscribes a new connection to its game and sends it the current state
+     *
+     * @param ctx The connection context
+     */
+    private void connect(WsContext ctx) {
+        GameSession session = registry.get(ctx.pathParam("id"));
+        if (session == null) {
+            ctx.session.close(StatusCode.POLICY_VIOLATION, "Game not found");
+            return;
+        }
+        subscribers.compute(session.getId(), (id, set) -> {
+            if (set == null)
+                set = ConcurrentHashMap.newKeySet();
+            set.add(ctx);
+            return set;
+        });
+        ctx.send(ByteBuffer.wrap(WireEncoder.encode(session.getGame().getSnapshot())));
+    }
+
+    /**
+     * Applies a move sent by a client, or resends the state on an empty frame
+     *
+     * @param ctx The message context
+     */
+    private void message(WsBinaryMessageContext ctx) {
+        GameSession session = registry.get(ctx.pathParam("id"));
+        if (session == null) {
+            ctx.session.close(StatusCode.POLICY_VIOLATION, "Game not found");
+            return;
+        }
+        if (ctx.length() == 0) {
+            ctx.send(ByteBuffer.wrap(WireEncoder.encode(session.getGame().getSnapshot())));
+            return;
+        }
+
+        try {
+            byte[] frame = Arrays.copyOfRange(ctx.data(), ctx.offset(), ctx.offset() + ctx.length());
+            int[] move = WireDecoder.decodeMove(frame);
+            GameSnapshot after = session.getGame().update(move[0], move[1]);
+            listener.moved(session, move[0], move[1], after);
+            if (after.isWinner())
+                listener.won(session, after);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+            ctx.session.close(StatusCode.BAD_DATA, ex.getMessage());
+        } catch (UnavailableException ex) {
+            ctx.session.close(StatusCode.TRY_AGAIN_LATER, ex.getMessage());
+        }
+    }
+
+    /**
+     * Unsubscribes a closed connection from its game
+     *
+     * @param ctx The connection context
+     */
+    private void disconnect(WsContext ctx) {
+        long id = GameRegistry.parse(ctx.pathParam("id"));
+        subscribers.computeIfPresent(id, (key, set) -> {
+            set.remove(ctx);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    /**
+     * Sends a frame to each of the provided connections without waiting for any of them
+     *
+     * @param targets The connections to send to
+     * @param frame   The frame to send
+     */
+    private void broadcast(Set<WsContext> targets, byte[] frame) {
+        for (WsContext ctx : targets) {
+            if (ctx.session.isOpen())
+                ctx.send(ByteBuffer.wrap(frame));
+        }
+    }
+}
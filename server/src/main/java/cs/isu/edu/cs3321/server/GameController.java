@@ -0,0 +1,341 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.server;
+
+import cs.isu.edu.cs3321.lightsout.Board;
+import cs.isu.edu.cs3321.lightsout.ConcurrentGame;
+import cs.isu.edu.cs3321.lightsout.Constants;
+import cs.isu.edu.cs3321.lightsout.GameSnapshot;
+import cs.isu.edu.cs3321.lightsout.SolutionCache;
+import cs.isu.edu.cs3321.lightsout.WireDecoder;
+import cs.isu.edu.cs3321.lightsout.WireEncoder;
+import cs.isu.edu.cs3321.lightsout.WireFormat;
+import io.javalin.http.BadRequestResponse;
+import io.javalin.http.ConflictResponse;
+import io.javalin.http.Context;
+import io.javalin.http.NotFoundResponse;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Handlers for the game api. Routes which carry an {@code id} path parameter act on the matching session of the
+ * registry, while the routes of the first release act on a single pinned default session. States are sent as JSON, or
+ * in the binary form of {@link WireFormat} to clients which accept {@link WireFormat#STATE_TYPE}.
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public class GameController {
+
+    private final GameRegistry registry;
+    private final GameListener listener;
+    private final BoardPool pool;
+    private final GameHistory history;
+    private final GameSession defaultSession;
+
+    /**
+     * Constructor
+     *
+     * @param registry The registry holding the games hosted by this server
+     * @param listener Told of every change made through this controller
+     * @param pool     Boards of every difficulty used by resets which ask for one
+     * @param history  The moves of every game, which must be among the listeners
+     */
+    public GameController(GameRegistry registry, GameListener listener, BoardPool pool, GameHistory history) {
+        this.registry = registry;
+        this.listener = listener;
+        this.pool = pool;
+        this.history = history;
+        this.defaultSession = registry.createPinned();
+    }
+
+    /**
+     * Creates a new game and responds with its id and initial state. The optional {@code width} and {@code height}
+     * query parameters set the dimensions of the board.
+     *
+     * @param ctx The request context
+     */
+    public void create(Context ctx) {
+        int width = ctx.queryParamAsClass("width", Integer.class).getOrDefault(Constants.MAX_X);
+        int height = ctx.queryParamAsClass("height", Integer.class).getOrDefault(Constants.MAX_Y);
+        if (width < 1 || height < 1 || width > Constants.MAX_DIMENSION || height > Constants.MAX_DIMENSION)
+            throw new BadRequestResponse("Board dimensions must be between 1 and " + Constants.MAX_DIMENSION);
+        GameSession session = registry.create(width, height);
+        ctx.status(201)
+                .header("Location", "/api/games/" + session.getKey())
+                .json(Map.of("id", session.getKey(), "state", session.getGame().getState()));
+    }
+
+    /**
+     * Responds with the current state of the game, tagged with an {@code ETag} of the game, this run of the server and
+     * the version. A request whose {@code If-None-Match} header names the tag is answered with
+     * {@code 304 Not Modified}, and other requests for a version already sent are answered with the bytes kept by the
+     * session.
+     *
+     * @param ctx The request context
+     */
+    public void state(Context ctx) {
+        GameSession session = session(ctx);
+        GameSnapshot snapshot = session.getGame().getSnapshot();
+        boolean binary = accepts(ctx);
+        String etag = EncodedState.etag(session, snapshot, binary);
+        ctx.header("Vary", "Accept").header("ETag", etag).header("Cache-Control", "no-cache");
+        if (EncodedState.matches(ctx.header("If-None-Match"), etag)) {
+            ctx.status(304);
+            return;
+        }
+        EncodedState encoded = session.encoded(snapshot);
+        if (encoded == null)
+            respond(ctx, snapshot);
+        else if (binary)
+            ctx.contentType(WireFormat.STATE_TYPE).result(encoded.binary());
+        else
+            ctx.contentType("application/json").result(encoded.json());
+    }
+
+    /**
+     * Applies the selection of the cell in the request body, either a JSON [x, y] pair or a binary move, and responds
+     * with the new state of the game. This is the busiest route, so the move is parsed from the bytes of the body and
+     * the state written from the {@link MoveBuffer} of the thread, without boxing the coordinates or serializing a
+     * {@code GameState} through Jackson.
+     *
+     * @param ctx The request context
+     * @throws IOException         if the request cannot be read or the response written
+     * @throws BadRequestResponse if the body is neither JSON nor binary moves
+     */
+    public void update(Context ctx) throws IOException {
+        boolean binary = binaryMoves(ctx);
+        GameSession session = session(ctx);
+        MoveBuffer buffer = MoveBuffer.forThread();
+        buffer.read(ctx.req);
+        long move = binary ? buffer.binaryMove() : buffer.jsonMove();
+        int x = (int) (move >>> 32);
+        int y = (int) move;
+        GameSnapshot after = session.getGame().update(x, y);
+        listener.moved(session, x, y, after);
+        if (after.isWinner())
+            listener.won(session, after);
+        buffer.respond(ctx.req, ctx.res, after);
+    }
+
+    /**
+     * Applies every selection in the request body, either a JSON array of [x, y] pairs or back to back binary moves, as
+     * a single change and responds with the final state of the game. If any selection is invalid none are applied.
+     *
+     * @param ctx The request context
+     * @throws BadRequestResponse if the body is neither JSON nor binary moves
+     */
+    public void updateBatch(Context ctx) {
+        boolean binary = binaryMoves(ctx);
+        GameSession session = session(ctx);
+        int[][] moves = binary ? WireDecoder.decodeMoves(ctx.bodyAsBytes()) : ctx.bodyAsClass(int[][].class);
+
+        ConcurrentGame game = session.getGame();
+        if (moves.length == 0) {
+            respond(ctx, game.getSnapshot());
+            return;
+        }
+        Board toggles = game.toggles(moves);
+        GameSnapshot after = game.apply(toggles);
+        listener.toggled(session, moves, toggles, after);
+        if (after.isWinner())
+            listener.won(session, after);
+        respond(ctx, after);
+    }
+
+    /**
+     * Resets the game to a random board and responds with the new state of the game. The optional {@code difficulty}
+     * query parameter asks for a board whose minimal solution takes that many presses, or a number of presses in a
+     * band given as {@code min-max}, taken from the {@link BoardPool}, which answers 503 if none is ready in time.
+     *
+     * @param ctx The request context
+     */
+    public void reset(Context ctx) {
+        GameSession session = session(ctx);
+        String difficulty = ctx.queryParam("difficulty");
+        GameSnapshot after;
+        if (difficulty == null) {
+            after = history.replace(session, () -> session.getGame().reset());
+        } else {
+            Board board = session.getGame().getBoard();
+            int split = difficulty.indexOf('-', 1);
+            int min;
+            int max;
+            try {
+                min = Integer.parseInt(split < 0 ? difficulty : difficulty.substring(0, split));
+                max = split < 0 ? min : Integer.parseInt(difficulty.substring(split + 1));
+            } catch (NumberFormatException ex) {
+                throw new BadRequestResponse("Difficulty must be a number of presses or a band of the form min-max");
+            }
+            Board fresh = pool.take(board.getWidth(), board.getHeight(), min, max);
+            after = history.replace(session, () -> session.getGame().reset(fresh));
+        }
+        listener.changed(session, after);
+        respond(ctx, after);
+    }
+
+    /**
+     * Undoes the last move or batch of moves of the game since its last reset, and responds with the new state of the
+     * game. Answers 409 if there is nothing left to undo.
+     *
+     * @param ctx The request context
+     */
+    public void undo(Context ctx) {
+        GameSnapshot after = history.undo(session(ctx), listener);
+        if (after == null)
+            throw new ConflictResponse("Nothing to undo");
+        respond(ctx, after);
+    }
+
+    /**
+     * Redoes the last move or batch of moves undone, and responds with the new state of the game. Answers 409 if there
+     * is nothing to redo, as a new move discards the moves which were undone.
+     *
+     * @param ctx The request context
+     */
+    public void redo(Context ctx) {
+        GameSnapshot after = history.redo(session(ctx), listener);
+        if (after == null)
+            throw new ConflictResponse("Nothing to redo");
+        respond(ctx, after);
+    }
+
+    /**
+     * Responds with the moves made since the last reset, as the list of steps each holding the [x, y] pairs it pressed
+     * and the number of those steps which are applied, along with the number of older steps dropped from the history.
+     * With the {@code at} query parameter it instead responds with the board after that many of the steps kept.
+     *
+     * @param ctx The request context
+     */
+    public void history(Context ctx) {
+        GameSession session = session(ctx);
+        String step = ctx.queryParam("at");
+        if (step != null) {
+            int at;
+            try {
+                at = Integer.parseInt(step);
+            } catch (NumberFormatException ex) {
+                throw new BadRequestResponse("The step must be a number of moves");
+            }
+            Board board = history.read(session, log -> log.stateAt(at));
+            ctx.json(Map.of("step", at, "board", board.toArray(), "winner", board.isClear()));
+            return;
+        }
+        ctx.json(history.read(session, log -> {
+            int[][][] steps = new int[log.getSteps()][][];
+            for (int i = 0; i < steps.length; i++) {
+                steps[i] = log.step(i);
+            }
+            return Map.of("position", log.getPosition(), "steps", steps, "dropped", log.getDropped());
+        }));
+    }
+
+    /**
+     * Responds with the solution of the current board which needs the fewest presses, looked up in the
+     * {@link SolutionCache} of its size
+     *
+     * @param ctx The request context
+     */
+    public void solve(Context ctx) {
+        Board board = session(ctx).getGame().getBoard();
+        ctx.json(SolutionCache.forSize(board.getWidth(), board.getHeight()).solve(board));
+    }
+
+    /**
+     * Ends the game, releasing its session
+     *
+     * @param ctx The request context
+     */
+    public void delete(Context ctx) {
+        GameSession session = session(ctx);
+        if (session.isPinned() || registry.remove(session.getId()) == null)
+            throw new NotFoundResponse("Game not found");
+        ctx.status(204);
+    }
+
+    /**
+     * Sends a state of a game in the form the client accepts
+     *
+     * @param ctx      The request context
+     * @param snapshot The state to send
+     */
+    void respond(Context ctx, GameSnapshot snapshot) {
+        ctx.header("Vary", "Accept");
+        if (accepts(ctx))
+            ctx.contentType(WireFormat.STATE_TYPE).result(WireEncoder.encode(snapshot));
+        else
+            ctx.json(snapshot.toState());
+    }
+
+    /**
+     * Tells whether the moves in a request body are binary or JSON, ignoring any parameters of the content type
+     *
+     * @param ctx The request context
+     * @return True if the body holds binary moves, false if it holds JSON
+     * @throws BadRequestResponse if the body is neither
+     */
+    private static boolean binaryMoves(Context ctx) {
+        String type = ctx.req.getContentType();
+        if (isMediaType(type, WireFormat.MOVE_TYPE))
+            return true;
+        if (isMediaType(type, "application/json"))
+            return false;
+        throw new BadRequestResponse("Moves must be sent as application/json or " + WireFormat.MOVE_TYPE);
+    }
+
+    /**
+     * Tests a content type against a media type without allocating, as it is checked on every move
+     *
+     * @param type  The content type of a request, which may be null or carry parameters
+     * @param media The media type
+     * @return True if the content type is the media type, whatever its parameters
+     */
+    private static boolean isMediaType(String type, String media) {
+        if (type == null || !type.regionMatches(true, 0, media, 0, media.length()))
+            return false;
+        return type.length() == media.length() || type.charAt(media.length()) == ';'
+                || type.charAt(media.length()) == ' ';
+    }
+
+    /**
+     * Tests whether a client accepts states in binary form
+     *
+     * @param ctx The request context
+     * @return True if the {@code Accept} header names {@link WireFormat#STATE_TYPE}
+     */
+    private static boolean accepts(Context ctx) {
+        String accept = ctx.header("Accept");
+        return accept != null && accept.contains(WireFormat.STATE_TYPE);
+    }
+
+    /**
+     * Finds the session targeted by a request
+     *
+     * @param ctx The request context
+     * @return The session named by the {@code id} path parameter, or the default session if there is none
+     * @throws NotFoundResponse if the named session does not exist
+     */
+    GameSession session(Context ctx) {
+        if (!ctx.pathParamMap().containsKey("id"))
+            return defaultSession;
+        GameSession session = registry.get(ctx.pathParam("id"));
+        if (session == null)
+            throw new NotFoundResponse("Game not found");
+        return session;
+    }
+}
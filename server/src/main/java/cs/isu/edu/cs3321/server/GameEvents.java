@@ -0,0 +1,103 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.server;
+
+import cs.isu.edu.cs3321.lightsout.Board;
+import cs.isu.edu.cs3321.lightsout.GameSnapshot;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Passes every change on to each of a list of listeners, in the order they were added
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public class GameEvents implements GameListener {
+
+    private final List<GameListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Adds a listener to be told of every later change
+     *
+     * @param listener The listener to add
+     */
+    public void add(GameListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void created(GameSession session, GameSnapshot state) {
+        for (GameListener listener : listeners) {
+            listener.created(session, state);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void moved(GameSession session, int x, int y, GameSnapshot after) {
+        for (GameListener listener : listeners) {
+            listener.moved(session, x, y, after);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void toggled(GameSession session, int[][] moves, Board toggles, GameSnapshot after) {
+        for (GameListener listener : listeners) {
+            listener.toggled(session, moves, toggles, after);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void won(GameSession session, GameSnapshot after) {
+        for (GameListener listener : listeners) {
+            listener.won(session, after);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void changed(GameSession session, GameSnapshot after) {
+        for (GameListener listener : listeners) {
+            listener.changed(session, after);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void ended(GameSession session) {
+        for (GameListener listener : listeners) {
+            listener.ended(session);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.server;
+
+import cs.isu.edu.cs3321.lightsout.Board;
+import cs.isu.edu.cs3321.lightsout.GameSnapshot;
+import cs.isu.edu.cs3321.lightsout.MoveLog;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Keeps a {@link MoveLog} of every game, from which moves are undone and redone and earlier boards are rebuilt. A batch
+ * is recorded as the presses which were sent, in their order, and each step is recorded once the game has applied it.
+ * Since presses can be applied in any order, moves made concurrently with an undo leave the board as if they had been
+ * made after it. Resets run through {@link #replace(GameSession, Supplier)}, under the same lock as undo and redo, so a
+ * step is never undone onto the board which replaced it.
+ * <p>
+ * Each log keeps at most {@link MoveLog#budget(int, int)} bytes, which {@link GameSession#estimateBytes(int, int)}
+ * counts against the memory cap of the registry, and drops its oldest steps beyond that. The log of a game which has
+ * ended is dropped and never started again.
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public class GameHistory implements GameListener {
+
+    private final int interval;
+    private final ConcurrentHashMap<GameSession, Log> logs = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param interval Number of steps between the checkpoints of each log
+     */
+    public GameHistory(int interval) {
+        this.interval = interval;
+    }
+
+    /**
+     * Starts the log of a new game
+     *
+     * @param session The new game
+     * @param state   The initial state of the game
+     */
+    @Override
+    public void created(GameSession session, GameSnapshot state) {
+        logs.put(session, new Log(new MoveLog(state.copyBoard(), state.getVersion(), interval)));
+    }
+
+    /**
+     * Records a move
+     *
+     * @param session The game the move was made in
+     * @param x       The selected column
+     * @param y       The selected row
+     * @param after   The state of the game immediately after the move
+     */
+    @Override
+    public void moved(GameSession session, int x, int y, GameSnapshot after) {
+        Log log = log(session);
+        synchronized (log) {
+            if (!log.applying)
+                log.moves.record(x, y, after.getVersion());
+        }
+    }
+
+    /**
+     * Records a batch of moves
+     *
+     * @param session The game the change was made in
+     * @param moves   The selected cells in the order they were sent, each an [x, y] pair
+     * @param toggles Board whose lights are on where the change toggled the game
+     * @param after   The state of the game immediately after the change
+     */
+    @Override
+    public void toggled(GameSession session, int[][] moves, Board toggles, GameSnapshot after) {
+        Log log = log(session);
+        synchronized (log) {
+            if (!log.applying)
+                log.moves.record(moves, after.getVersion());
+        }
+    }
+
+    /**
+     * Starts the log of a game again from its new board, unless it already started from it or a later one
+     *
+     * @param session The game which changed
+     * @param after   The state of the game after the change
+     */
+    @Override
+    public void changed(GameSession session, GameSnapshot after) {
+        Log log = log(session);
+        synchronized (log) {
+            if (after.getVersion() > log.moves.getBaseVersion())
+                log.moves.start(after.copyBoard(), after.getVersion());
+        }
+    }
+
+    /**
+     * Drops the log of a game which has ended
+     *
+     * @param session The game which ended
+     */
+    @Override
+    public void ended(GameSession session) {
+        logs.remove(session);
+    }
+
+    /**
+     * Replaces the board of a game, such as with a reset, and starts its log again from the new board before any step
+     * can be undone or redone
+     *
+     * @param session The game
+     * @param change  Makes the change to the game
+     * @return The state of the game after the change
+     */
+    public GameSnapshot replace(GameSession session, Supplier<GameSnapshot> change) {
+        Log log = log(session);
+        synchronized (log) {
+            GameSnapshot after = change.get();
+            if (after.getVersion() > log.moves.getBaseVersion())
+                log.moves.start(after.copyBoard(), after.getVersion());
+            return after;
+        }
+    }
+
+    /**
+     * Undoes the last step of a game which has not been undone
+     *
+     * @param session  The game
+     * @param listener Told of the change, which is reported as a batch
+     * @return The state of the game after the undo, or null if there is nothing to undo
+     */
+    public GameSnapshot undo(GameSession session, GameListener listener) {
+        Log log = log(session);
+        synchronized (log) {
+            return apply(session, log, log.moves.undo(), listener);
+        }
+    }
+
+    /**
+     * Redoes the last step of a game which was undone
+     *
+     * @param session  The game
+     * @param listener Told of the change, which is reported as a batch
+     * @return The state of the game after the redo, or null if there is nothing to redo
+     */
+    public GameSnapshot redo(GameSession session, GameListener listener) {
+        Log log = log(session);
+        synchronized (log) {
+            return apply(session, log, log.moves.redo(), listener);
+        }
+    }
+
+    /**
+     * Runs an action against the log of a game while no step is being recorded
+     *
+     * @param session The game
+     * @param action  The action, which must not keep the log
+     * @param <T>     The type of the result of the action
+     * @return The result of the action
+     */
+    public <T> T read(GameSession session, Function<MoveLog, T> action) {
+        Log log = log(session);
+        synchronized (log) {
+            return action.apply(log.moves);
+        }
+    }
+
+    /**
+     * Presses the cells of a step, telling the listener of the change without recording it again
+     */
+    private GameSnapshot apply(GameSession session, Log log, int[][] cells, GameListener listener) {
+        if (cells == null)
+            return null;
+        Board toggles = Board.create(log.moves.getWidth(), log.moves.getHeight());
+        for (int[] cell : cells) {
+            toggles.press(cell[0], cell[1]);
+        }
+        GameSnapshot after = session.getGame().apply(toggles);
+        log.applying = true;
+        try {
+            listener.toggled(session, cells, toggles, after);
+            if (after.isWinner())
+                listener.won(session, after);
+        } finally {
+            log.applying = false;
+        }
+        return after;
+    }
+
+    /**
+     * Finds the log of a game, starting it from the current board for games created before this history, such as
+     * those recovered from the journal. A game which has ended gets a log of its own which is not kept, so its late
+     * moves are recorded nowhere.
+     */
+    private Log log(GameSession session) {
+        Log log = logs.get(session);
+        if (log != null)
+            return log;
+        if (session.isEnded())
+            return fresh(session);
+        log = logs.computeIfAbsent(session, this::fresh);
+        // the registry marks a session as ended before telling this history, so either ended() removes the log
+        // started here, or this sees the mark
+        if (session.isEnded())
+            logs.remove(session, log);
+        return log;
+    }
+
+    /**
+     * Starts a log from the current board of a game
+     */
+    private Log fresh(GameSession session) {
+        GameSnapshot current = session.getGame().getSnapshot();
+        return new Log(new MoveLog(current.copyBoard(), current.getVersion(), interval));
+    }
+
+    /**
+     * The log of one game, and whether one of its steps is being undone or redone by this thread
+     */
+    private static final class Log {
+
+        private final MoveLog moves;
+        private boolean applying;
+
+        Log(MoveLog moves) {
+            this.moves = moves;
+        }
+    }
+}
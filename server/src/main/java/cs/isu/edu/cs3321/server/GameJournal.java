@@ -0,0 +1,795 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.server;
+
+import cs.isu.edu.cs3321.lightsout.Board;
+import cs.isu.edu.cs3321.lightsout.BoardGenerator;
+import cs.isu.edu.cs3321.lightsout.ConcurrentGame;
+import cs.isu.edu.cs3321.lightsout.GameSnapshot;
+import cs.isu.edu.cs3321.lightsout.WireDecoder;
+import cs.isu.edu.cs3321.lightsout.WireEncoder;
+import cs.isu.edu.cs3321.lightsout.WireFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Append-only journal of every change to the games of a {@link GameRegistry}, from which the games are recovered after
+ * a restart.
+ * <p>
+ * Request threads only queue a record. A move is queued as a few numbers in a ring allocated up front, so journaling
+ * it allocates nothing, while the rarer full states are encoded by the request thread. A single writer thread encodes
+ * the queued moves into a buffer it reuses and appends every queued record to the current segment, a memory-mapped
+ * file of fixed size, and forces the segment to disk at most once per flush interval for all the records written in
+ * between. A record in a mapped segment survives the process being killed as soon as it is written, and survives the
+ * machine failing once the segment has been forced. When a record does not fit, the writer
+ * rolls to a new segment.
+ * <p>
+ * Every snapshot interval the writer rolls to a new segment and captures the immutable snapshot of every game, which a
+ * background thread writes to a snapshot file before deleting the segments and snapshots it supersedes. Recovery loads
+ * the latest snapshot and replays the segments written after it. As moves commute, each game is recovered as its
+ * latest full state with every later move applied, whatever order concurrent changes reached the journal in.
+ * <p>
+ * A record which cannot be written is logged and counted in {@link #getWriteFailures()}, and the journal reports itself
+ * unhealthy until a later record is written.
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public class GameJournal implements GameListener, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GameJournal.class);
+
+    static final byte MOVE = 1;
+    static final byte STATE = 2;
+    static final byte END = 3;
+
+    private static final int FRAME_BYTES = 2 * Integer.BYTES;
+    private static final int SNAPSHOT_MAGIC = 0x4C4F534E;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final int MOVE_BYTES = 1 + 2 * Long.BYTES + 2 * Short.BYTES;
+    private static final Runnable STOP = () -> {
+    };
+
+    private final Path directory;
+    private final GameRegistry registry;
+    private final int segmentBytes;
+    private final long flushNanos;
+    private final long snapshotNanos;
+    private final Records queue;
+    private final Thread writer;
+    private final Thread snapshotter;
+    private final BlockingQueue<Runnable> snapshots = new ArrayBlockingQueue<>(1);
+    private volatile boolean closed;
+    private final AtomicLong writeFailures = new AtomicLong();
+    private volatile boolean healthy = true;
+
+    // only used by the writer thread
+    private long segment;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private boolean dirty;
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer move = ByteBuffer.allocate(MOVE_BYTES);
+
+    /**
+     * Constructor, which starts the writer on a new segment after any already in the directory
+     *
+     * @param directory     Directory holding the segments and snapshots
+     * @param registry      Registry whose games are journaled
+     * @param segmentBytes  Size of each segment
+     * @param flushInterval Longest time a written record waits to be forced to disk
+     * @param snapshotEvery Time between snapshots
+     * @param queueCapacity Number of records which may wait for the writer before request threads have to wait as well
+     * @param nextSegment   Number of the first segment to write
+     * @throws IOException if the first segment cannot be created
+     */
+    private GameJournal(Path directory, GameRegistry registry, int segmentBytes, Duration flushInterval,
+                        Duration snapshotEvery, int queueCapacity, long nextSegment) throws IOException {
+        this.directory = directory;
+        this.registry = registry;
+        this.segmentBytes = segmentBytes;
+        this.flushNanos = flushInterval.toNanos();
+        this.snapshotNanos = snapshotEvery.toNanos();
+        this.queue = new Records(queueCapacity);
+        openSegment(nextSegment, segmentBytes);
+
+        this.writer = new Thread(this::write, "journal-writer");
+        this.snapshotter = new Thread(this::takeSnapshots, "journal-snapshotter");
+        writer.setDaemon(true);
+        snapshotter.setDaemon(true);
+        writer.start();
+        snapshotter.start();
+    }
+
+    /**
+     * Recovers the games journaled in a directory into the registry, then starts journaling every later change
+     *
+     * @param directory     Directory holding the segments and snapshots, created if it does not exist
+     * @param registry      Registry to recover the games into, and whose games are journaled
+     * @param generator     Generator of the boards of the recovered games
+     * @param segmentBytes  Size of each segment
+     * @param flushInterval Longest time a written record waits to be forced to disk
+     * @param snapshotEvery Time between snapshots
+     * @return The running journal, which must also be added as a listener of the registry's changes
+     * @throws IOException if the directory cannot be read or the first segment cannot be created
+     */
+    public static GameJournal open(Path directory, GameRegistry registry, BoardGenerator generator, int segmentBytes,
+                                   Duration flushInterval, Duration snapshotEvery) throws IOException {
+        Files.createDirectories(directory);
+        long next = recover(directory, registry, generator);
+        return new GameJournal(directory, registry, segmentBytes, flushInterval, snapshotEvery, 1 << 16, next);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void created(GameSession session, GameSnapshot state) {
+        append(state(session.getId(), state));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void moved(GameSession session, int x, int y, GameSnapshot after) {
+        if (closed)
+            return;
+        try {
+            queue.putMove(session.getId(), after.getVersion(), x, y);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void toggled(GameSession session, int[][] moves, Board toggles, GameSnapshot after) {
+        append(state(session.getId(), after));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void changed(GameSession session, GameSnapshot after) {
+        append(state(session.getId(), after));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void ended(GameSession session) {
+        append(ByteBuffer.allocate(1 + 2 * Long.BYTES)
+                .put(END)
+                .putLong(session.getId())
+                .putLong(session.getGame().getVersion())
+                .array());
+    }
+
+    /**
+     * Counts the records which could not be written since the journal was opened
+     *
+     * @return The number of records lost
+     */
+    public long getWriteFailures() {
+        return writeFailures.get();
+    }
+
+    /**
+     * Tells whether the latest record was written, which is false from a failed write until a record is written again
+     *
+     * @return True if the journal is keeping up with the games
+     */
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    /**
+     * Stops journaling, after writing and forcing every record already queued
+     *
+     * @throws IOException if the writer was interrupted while finishing
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        queue.close();
+        try {
+            writer.join();
+            snapshots.put(STOP);
+            snapshotter.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing the journal", ex);
+        }
+    }
+
+    /**
+     * Queues a record for the writer, only waiting if the writer has fallen a full queue behind
+     *
+     * @param record The record
+     */
+    private void append(byte[] record) {
+        if (closed)
+            return;
+        try {
+            queue.put(record);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Encodes the full state of a game as a record
+     *
+     * @param id    Identifier of the game
+     * @param state The state of the game
+     * @return The record
+     */
+    private static byte[] state(long id, GameSnapshot state) {
+        ByteBuffer record = ByteBuffer.allocate(1 + Long.BYTES
+                + WireFormat.encodedLength(state.getWidth(), state.getHeight()));
+        record.put(STATE).putLong(id);
+        WireEncoder.encode(state, record);
+        return record.array();
+    }
+
+    /**
+     * Body of the writer thread, which appends queued records and forces them to disk once per flush interval
+     */
+    private void write() {
+        List<byte[]> batch = new ArrayList<>();
+        long[] moves = new long[Records.MOVE_LONGS * queue.capacity];
+        long lastForce = System.nanoTime();
+        long lastSnapshot = lastForce;
+        boolean running = true;
+        while (running) {
+            int count = 0;
+            try {
+                count = queue.drain(flushNanos, batch, moves);
+            } catch (InterruptedException ex) {
+                // only close stops the writer, so that no queued record is lost
+            }
+            running = count >= 0;
+            for (byte[] record : batch) {
+                write(record, record.length);
+            }
+            batch.clear();
+            for (int i = 0; i < count; i++) {
+                int at = i * Records.MOVE_LONGS;
+                move.clear();
+                move.put(MOVE)
+                        .putLong(moves[at])
+                        .putLong(moves[at + 1])
+                        .putShort((short) (moves[at + 2] >> 16))
+                        .putShort((short) moves[at + 2]);
+                write(move.array(), move.position());
+            }
+
+            long now = System.nanoTime();
+            if (dirty && (!running || now - lastForce >= flushNanos)) {
+                buffer.force();
+                dirty = false;
+                lastForce = now;
+            }
+            if (running && now - lastSnapshot >= snapshotNanos) {
+                lastSnapshot = now;
+                try {
+                    snapshot();
+                } catch (IOException ex) {
+                    LOG.error("Could not start a snapshot in " + directory, ex);
+                }
+            }
+        }
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            LOG.error("Could not close the journal segment " + segment, ex);
+        }
+    }
+
+    /**
+     * Appends a record, counting it as lost if it cannot be written
+     *
+     * @param record Array holding the record from its start
+     * @param length Length of the record
+     */
+    private void write(byte[] record, int length) {
+        try {
+            writeRecord(record, length);
+            healthy = true;
+        } catch (IOException ex) {
+            writeFailures.incrementAndGet();
+            if (healthy)
+                LOG.error("Could not write to the journal in " + directory, ex);
+            healthy = false;
+        }
+    }
+
+    /**
+     * Appends a framed record to the current segment, rolling to a new segment if it does not fit
+     *
+     * @param record Array holding the record from its start
+     * @param length Length of the record
+     * @throws IOException if a new segment is needed and cannot be created
+     */
+    private void writeRecord(byte[] record, int length) throws IOException {
+        int needed = FRAME_BYTES + length;
+        // a zero length marks the end of a segment, so one must always be left for it
+        if (buffer.remaining() < needed + Integer.BYTES)
+            roll(needed + Integer.BYTES);
+        crc.reset();
+        crc.update(record, 0, length);
+        buffer.putInt(length).putInt((int) crc.getValue()).put(record, 0, length);
+        dirty = true;
+    }
+
+    /**
+     * Forces and closes the current segment and opens the next one
+     *
+     * @param needed Number of bytes the next segment must hold at least
+     * @throws IOException if the next segment cannot be created
+     */
+    private void roll(int needed) throws IOException {
+        buffer.force();
+        dirty = false;
+        channel.close();
+        openSegment(segment + 1, Math.max(segmentBytes, needed));
+    }
+
+    /**
+     * Creates and maps a new segment
+     *
+     * @param number Number of the segment
+     * @param size   Size of the segment
+     * @throws IOException if the segment cannot be created
+     */
+    private void openSegment(long number, int size) throws IOException {
+        segment = number;
+        channel = FileChannel.open(segmentPath(directory, number),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    /**
+     * Rolls to a new segment and hands the state of every game to the snapshot thread. Every change made before the
+     * roll is part of the captured states, so the snapshot replaces every earlier segment.
+     *
+     * @throws IOException if the new segment cannot be created
+     */
+    private void snapshot() throws IOException {
+        if (!snapshots.isEmpty())
+            return;
+        roll(0);
+        long first = segment;
+        Map<Long, GameSnapshot> states = new HashMap<>();
+        registry.forEach(session -> states.put(session.getId(), session.getGame().getSnapshot()));
+        snapshots.offer(() -> writeSnapshot(first, states));
+    }
+
+    /**
+     * Body of the snapshot thread, which writes each captured snapshot in turn
+     */
+    private void takeSnapshots() {
+        while (true) {
+            try {
+                Runnable task = snapshots.take();
+                if (task == STOP)
+                    return;
+                task.run();
+            } catch (InterruptedException ex) {
+                // only close stops the snapshot thread, so that a snapshot is never left half written
+            }
+        }
+    }
+
+    /**
+     * Writes a snapshot file and then deletes the segments and snapshots it supersedes
+     *
+     * @param first  Number of the first segment written after the states were captured
+     * @param states The state of every game, by id
+     */
+    private void writeSnapshot(long first, Map<Long, GameSnapshot> states) {
+        Path target = snapshotPath(directory, first);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel file = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            CRC32 crc = new CRC32();
+            OutputStream stream = Channels.newOutputStream(file);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(stream, crc)));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(states.size());
+            for (Map.Entry<Long, GameSnapshot> entry : states.entrySet()) {
+                byte[] state = WireEncoder.encode(entry.getValue());
+                out.writeLong(entry.getKey());
+                out.writeInt(state.length);
+                out.write(state);
+            }
+            out.flush();
+            new DataOutputStream(stream).writeInt((int) crc.getValue());
+            file.force(true);
+        } catch (IOException ex) {
+            LOG.error("Could not write the snapshot " + target, ex);
+            return;
+        }
+
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path path : (Iterable<Path>) files::iterator) {
+                    long segmentNumber = number(path, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+                    long snapshotNumber = number(path, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+                    if ((segmentNumber >= 0 && segmentNumber < first) || (snapshotNumber >= 0 && snapshotNumber < first))
+                        Files.deleteIfExists(path);
+                }
+            }
+        } catch (IOException ex) {
+            LOG.error("Could not replace the journal before " + target, ex);
+        }
+    }
+
+    /**
+     * Rebuilds the games of a directory from its latest snapshot and the segments written after it
+     *
+     * @param directory Directory holding the segments and snapshots
+     * @param registry  Registry to recover the games into
+     * @param generator Generator of the boards of the recovered games
+     * @return Number of the first segment which may be written
+     * @throws IOException if the directory cannot be read
+     */
+    static long recover(Path directory, GameRegistry registry, BoardGenerator generator) throws IOException {
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        TreeMap<Long, Path> snapshots = new TreeMap<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(path -> {
+                long segmentNumber = number(path, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+                long snapshotNumber = number(path, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+                if (segmentNumber >= 0)
+                    segments.put(segmentNumber, path);
+                if (snapshotNumber >= 0)
+                    snapshots.put(snapshotNumber, path);
+            });
+        }
+
+        Map<Long, Recovery> games = new HashMap<>();
+        long first = 0;
+        for (Map.Entry<Long, Path> entry : snapshots.descendingMap().entrySet()) {
+            if (readSnapshot(entry.getValue(), games)) {
+                first = entry.getKey();
+                break;
+            }
+            games.clear();
+        }
+        for (Path path : segments.tailMap(first).values()) {
+            readSegment(path, games);
+        }
+
+        int recovered = 0;
+        for (Map.Entry<Long, Recovery> entry : games.entrySet()) {
+            GameSnapshot state = entry.getValue().finish();
+            if (state == null)
+                continue;
+            try {
+                registry.restore(entry.getKey(), new ConcurrentGame(state, generator));
+                recovered++;
+            } catch (IllegalStateException ex) {
+                LOG.warn("Could not recover game " + GameRegistry.format(entry.getKey()), ex);
+            }
+        }
+        if (!games.isEmpty() || !segments.isEmpty())
+            LOG.info("Recovered " + recovered + " games from " + directory);
+        return Math.max(first, segments.isEmpty() ? 0 : segments.lastKey() + 1);
+    }
+
+    /**
+     * Reads every game of a snapshot file
+     *
+     * @param path  The snapshot file
+     * @param games The games being recovered, by id
+     * @return True if the snapshot is complete, otherwise it must be ignored
+     */
+    private static boolean readSnapshot(Path path, Map<Long, Recovery> games) {
+        try {
+            ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(path));
+            if (data.remaining() < 3 * Integer.BYTES)
+                return false;
+            CRC32 crc = new CRC32();
+            crc.update(data.array(), 0, data.limit() - Integer.BYTES);
+            if (data.getInt(data.limit() - Integer.BYTES) != (int) crc.getValue() || data.getInt() != SNAPSHOT_MAGIC)
+                return false;
+            int count = data.getInt();
+            for (int i = 0; i < count; i++) {
+                long id = data.getLong();
+                int length = data.getInt();
+                ByteBuffer state = data.slice();
+                state.limit(length);
+                games.computeIfAbsent(id, key -> new Recovery()).state(WireDecoder.decode(state));
+                data.position(data.position() + length);
+            }
+            return true;
+        } catch (IOException | RuntimeException ex) {
+            LOG.warn("Ignoring the unreadable snapshot " + path, ex);
+            return false;
+        }
+    }
+
+    /**
+     * Reads every complete record of a segment, stopping at its end or at the first record which was torn or never
+     * written
+     *
+     * @param path  The segment file
+     * @param games The games being recovered, by id
+     * @throws IOException if the segment cannot be read
+     */
+    private static void readSegment(Path path, Map<Long, Recovery> games) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(path));
+        CRC32 crc = new CRC32();
+        while (data.remaining() >= FRAME_BYTES) {
+            int length = data.getInt();
+            int checksum = data.getInt();
+            if (length <= 0 || length > data.remaining())
+                return;
+            crc.reset();
+            crc.update(data.array(), data.position(), length);
+            if ((int) crc.getValue() != checksum)
+                return;
+
+            ByteBuffer record = data.slice();
+            record.limit(length);
+            data.position(data.position() + length);
+            byte type = record.get();
+            long id = record.getLong();
+            if (type == MOVE) {
+                long version = record.getLong();
+                int x = record.getShort() & 0xFFFF;
+                int y = record.getShort() & 0xFFFF;
+                games.computeIfAbsent(id, key -> new Recovery()).move(x, y, version);
+            } else if (type == STATE) {
+                games.computeIfAbsent(id, key -> new Recovery()).state(WireDecoder.decode(record));
+            } else if (type == END) {
+                long version = record.remaining() >= Long.BYTES ? record.getLong() : Long.MAX_VALUE;
+                games.computeIfAbsent(id, key -> new Recovery()).end(version);
+            }
+        }
+    }
+
+    /**
+     * Parses the number of a segment or snapshot file
+     *
+     * @param path   The file
+     * @param prefix Prefix of the name of the kind of file
+     * @param suffix Suffix of the name of the kind of file
+     * @return The number of the file, or -1 if the file is not of the kind
+     */
+    private static long number(Path path, String prefix, String suffix) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith(prefix) || !name.endsWith(suffix))
+            return -1;
+        try {
+            return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    private static Path segmentPath(Path directory, long number) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    private static Path snapshotPath(Path directory, long number) {
+        return directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, number, SNAPSHOT_SUFFIX));
+    }
+
+    /**
+     * The records of one game read so far during recovery, in the order they were journaled. The latest full state is
+     * kept along with every move, and only the moves made after that state are applied once everything has been read.
+     * <p>
+     * A game may end and later come back, such as one handed to another node of a cluster and handed back. Its end
+     * records the version the game had, and drops the state and every move up to that version. A state read after the
+     * end with at least that version starts the game again, while older states and moves, which were queued before the
+     * end but reached the journal after it, are ignored.
+     */
+    private static class Recovery {
+
+        private GameSnapshot state;
+        private final List<long[]> moves = new ArrayList<>();
+        private long version;
+        private boolean ended;
+        private long endVersion = -1;
+
+        void state(GameSnapshot snapshot) {
+            if (ended) {
+                if (snapshot.getVersion() < endVersion)
+                    return;
+                ended = false;
+                state = snapshot;
+            } else if (state == null || snapshot.getVersion() > state.getVersion()) {
+                state = snapshot;
+            }
+            version = Math.max(version, snapshot.getVersion());
+        }
+
+        void move(int x, int y, long version) {
+            if (version <= endVersion)
+                return;
+            moves.add(new long[]{x, y, version});
+            this.version = Math.max(this.version, version);
+        }
+
+        void end(long version) {
+            ended = true;
+            endVersion = Math.max(endVersion, version);
+            state = null;
+            moves.removeIf(move -> move[2] <= endVersion);
+        }
+
+        /**
+         * @return The recovered state of the game, or null if it ended or its first state was never journaled
+         */
+        GameSnapshot finish() {
+            if (ended || state == null)
+                return null;
+            Board board = state.copyBoard();
+            boolean winner = state.isWinner();
+            for (long[] move : moves) {
+                if (move[2] > state.getVersion() && board.validLocation((int) move[0], (int) move[1])) {
+                    board.press((int) move[0], (int) move[1]);
+                    winner = board.isClear();
+                }
+            }
+            return GameSnapshot.of(board, winner, version);
+        }
+    }
+
+    /**
+     * The records waiting for the writer. Moves are kept as numbers in a ring allocated up front, and every other
+     * record as its encoded bytes. Request threads wait once as many records as the capacity are waiting.
+     */
+    private static class Records {
+
+        /**
+         * Numbers kept per move: the game id, the version after the move and the packed cell
+         */
+        static final int MOVE_LONGS = 3;
+
+        final int capacity;
+        private final long[] moves;
+        private final ArrayDeque<byte[]> others = new ArrayDeque<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+        private final Condition notFull = lock.newCondition();
+        private int head;
+        private int count;
+        private boolean closed;
+
+        Records(int capacity) {
+            this.capacity = capacity;
+            this.moves = new long[MOVE_LONGS * capacity];
+        }
+
+        void putMove(long id, long version, int x, int y) throws InterruptedException {
+            lock.lock();
+            try {
+                awaitRoom();
+                int at = (head + count) % capacity * MOVE_LONGS;
+                moves[at] = id;
+                moves[at + 1] = version;
+                moves[at + 2] = (x & 0xFFFF) << 16 | y & 0xFFFF;
+                count++;
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void put(byte[] record) throws InterruptedException {
+            lock.lock();
+            try {
+                awaitRoom();
+                others.add(record);
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Waits up to a timeout for a record, then takes every waiting record
+         *
+         * @param nanos   Longest time to wait for a record
+         * @param records List receiving every waiting record other than moves
+         * @param into    Array receiving the numbers of every waiting move, {@link #MOVE_LONGS} per move
+         * @return The number of moves taken, or -1 once the queue is closed and every record has been taken
+         * @throws InterruptedException if the writer is interrupted while waiting
+         */
+        int drain(long nanos, List<byte[]> records, long[] into) throws InterruptedException {
+            lock.lock();
+            try {
+                while (count == 0 && others.isEmpty() && !closed && nanos > 0) {
+                    nanos = notEmpty.awaitNanos(nanos);
+                }
+                if (count == 0 && others.isEmpty() && closed)
+                    return -1;
+                records.addAll(others);
+                others.clear();
+                int taken = count;
+                int first = Math.min(count, capacity - head);
+                System.arraycopy(moves, head * MOVE_LONGS, into, 0, first * MOVE_LONGS);
+                System.arraycopy(moves, 0, into, first * MOVE_LONGS, (count - first) * MOVE_LONGS);
+                head = (head + count) % capacity;
+                count = 0;
+                notFull.signalAll();
+                return taken;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void close() {
+            lock.lock();
+            try {
+                closed = true;
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void awaitRoom() throws InterruptedException {
+            while (count + others.size() >= capacity) {
+                notFull.await();
+            }
+        }
+    }
+}
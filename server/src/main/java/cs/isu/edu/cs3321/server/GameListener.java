@@ -0,0 +1,87 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.server;
+
+import cs.isu.edu.cs3321.lightsout.Board;
+import cs.isu.edu.cs3321.lightsout.GameSnapshot;
+
+/**
+ * Receives every change made to the games of a {@link GameRegistry}, on the thread which made it. Changes to one game
+ * made concurrently may be reported out of order, but each reports the version it produced.
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public interface GameListener {
+
+    /**
+     * Called when a game is created
+     *
+     * @param session The new game
+     * @param state   The initial state of the game
+     */
+    default void created(GameSession session, GameSnapshot state) {
+    }
+
+    /**
+     * Called when a cell of a game is selected
+     *
+     * @param session The game the move was made in
+     * @param x       The selected column
+     * @param y       The selected row
+     * @param after   The state of the game immediately after the move
+     */
+    default void moved(GameSession session, int x, int y, GameSnapshot after) {
+    }
+
+    /**
+     * Called when several moves of a game are applied as one change
+     *
+     * @param session The game the change was made in
+     * @param moves   The selected cells in the order they were sent, each an [x, y] pair
+     * @param toggles Board whose lights are on where the change toggled the game
+     * @param after   The state of the game immediately after the change
+     */
+    default void toggled(GameSession session, int[][] moves, Board toggles, GameSnapshot after) {
+    }
+
+    /**
+     * Called after a move or batch of moves turns the last light of a game off, once the change itself was reported
+     *
+     * @param session The game which was won
+     * @param after   The state of the game after the winning change
+     */
+    default void won(GameSession session, GameSnapshot after) {
+    }
+
+    /**
+     * Called when a game is given a new board, such as by a reset
+     *
+     * @param session The game which changed
+     * @param after   The state of the game after the change
+     */
+    default void changed(GameSession session, GameSnapshot after) {
+    }
+
+    /**
+     * Called when a game is removed from the registry, whether deleted or evicted
+     *
+     * @param session The game which ended
+     */
+    default void ended(GameSession session) {
+    }
+}
@@ -0,0 +1,425 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.server;
+
+import cs.isu.edu.cs3321.lightsout.BoardGenerator;
+import cs.isu.edu.cs3321.lightsout.ConcurrentGame;
+import cs.isu.edu.cs3321.lightsout.Constants;
+import cs.isu.edu.cs3321.lightsout.UnavailableException;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
+
+/**
+ * Concurrent registry of every game hosted by the server. Sessions are spread over a fixed number of shards by their
+ * id, so that creating, looking up and evicting games on one shard does not contend with the others. Sessions which
+ * go unused for longer than the idle timeout are evicted, and the estimated heap used by all sessions is capped. A new
+ * session which would exceed the cap evicts sessions one at a time until it fits, each the least recently used of a
+ * few sampled from a random shard under the lock of that shard, so making room never scans the whole registry. Looking
+ * up a session takes no lock. The listener is told of every game created and removed.
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public class GameRegistry {
+
+    /**
+     * Number of random ids tried for a new game before giving up. A server of a cluster of a hundred owns each id with
+     * odds of one in a hundred, and gives up with odds below one in 10^17.
+     */
+    static final int MAX_ID_ATTEMPTS = 4096;
+    /**
+     * Identifier of the pinned game, never given to another game, so that a journal recovers it on every start
+     */
+    public static final long PINNED_ID = 0;
+    /**
+     * Number of sessions of a shard compared when one must be evicted to make room, the least recently used of which is
+     * evicted
+     */
+    static final int EVICTION_SAMPLES = 8;
+
+    private final Shard[] shards;
+    private final int shardMask;
+    private final long idleNanos;
+    @Getter
+    private final long maxBytes;
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final BoardGenerator generator;
+    @Getter
+    @Setter
+    private volatile GameListener listener = new GameListener() {
+    };
+    /**
+     * Which ids new games may be given, such as only those a node of a cluster owns. Creating a game fails when no id
+     * is allowed.
+     */
+    @Getter
+    @Setter
+    private volatile LongPredicate ownership = id -> true;
+
+    /**
+     * Constructor
+     *
+     * @param shards      Number of shards, rounded up to the next power of two
+     * @param idleTimeout How long a session may go unused before it is evicted
+     * @param maxBytes    Upper bound on the estimated heap used by all sessions
+     * @param generator   Generator of the boards of every game in the registry
+     */
+    public GameRegistry(int shards, Duration idleTimeout, long maxBytes, BoardGenerator generator) {
+        int count = shards <= 1 ? 1 : Integer.highestOneBit(shards - 1) << 1;
+        this.shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            this.shards[i] = new Shard();
+        }
+        this.shardMask = count - 1;
+        this.idleNanos = idleTimeout.toNanos();
+        this.maxBytes = maxBytes;
+        this.generator = generator;
+    }
+
+    /**
+     * Creates a new game and registers it under a fresh random id
+     *
+     * @return The newly created session
+     * @throws UnavailableException if the memory cap is reached and no session can be evicted, or no id tried is
+     *                              allowed by the ownership
+     */
+    public GameSession create() {
+        return create(Constants.MAX_X, Constants.MAX_Y);
+    }
+
+    /**
+     * Creates a new game on a board of the provided dimensions and registers it under a fresh random id
+     *
+     * @param width  Number of columns in the board
+     * @param height Number of rows in the board
+     * @return The newly created session
+     * @throws IllegalArgumentException if either dimension is below 1 or above {@link Constants#MAX_DIMENSION}
+     * @throws UnavailableException     if the memory cap is reached and no session can be evicted, or no id tried is
+     *                                  allowed by the ownership
+     */
+    public GameSession create(int width, int height) {
+        return create(width, height, false);
+    }
+
+    /**
+     * Creates a new game which is never evicted, used to back the single game api of the first release. The game is
+     * always registered under {@link #PINNED_ID}, so if one was already restored from a journal it is returned instead.
+     *
+     * @return The pinned session
+     */
+    public GameSession createPinned() {
+        GameSession restored = get(PINNED_ID);
+        return restored != null ? restored : create(Constants.MAX_X, Constants.MAX_Y, true);
+    }
+
+    private GameSession create(int width, int height, boolean pinned) {
+        long bytes = GameSession.estimateBytes(width, height);
+        reserve(bytes);
+        try {
+            ConcurrentGame game = new ConcurrentGame(width, height, generator);
+            ThreadLocalRandom rand = ThreadLocalRandom.current();
+            for (int attempt = 0; attempt < MAX_ID_ATTEMPTS; attempt++) {
+                long id = pinned ? PINNED_ID : rand.nextLong() & Long.MAX_VALUE;
+                if (!pinned && (id == PINNED_ID || !ownership.test(id)))
+                    continue;
+                GameSession session = new GameSession(id, game, pinned, bytes);
+                if (shard(id).add(session)) {
+                    listener.created(session, game.getSnapshot());
+                    return session;
+                }
+            }
+            throw new UnavailableException("No game ids are available on this server");
+        } catch (RuntimeException ex) {
+            usedBytes.addAndGet(-bytes);
+            throw ex;
+        }
+    }
+
+    /**
+     * Registers a game which already has an id, such as one recovered after a restart, without telling the listener. A
+     * game registered under {@link #PINNED_ID} is pinned.
+     *
+     * @param id   Identifier of the session
+     * @param game The game played in the session
+     * @return The registered session
+     * @throws IllegalStateException if the id is taken
+     * @throws UnavailableException  if the memory cap is reached and no session can be evicted
+     */
+    public GameSession restore(long id, ConcurrentGame game) {
+        long bytes = GameSession.estimateBytes(game.getSnapshot().getWidth(), game.getSnapshot().getHeight());
+        reserve(bytes);
+        GameSession session = new GameSession(id, game, id == PINNED_ID, bytes);
+        if (!shard(id).add(session)) {
+            usedBytes.addAndGet(-bytes);
+            throw new IllegalStateException("Game " + format(id) + " is already registered");
+        }
+        return session;
+    }
+
+    /**
+     * Looks up a session by its id and marks it as used
+     *
+     * @param id Identifier of the session
+     * @return The session, or null if there is no such session
+     */
+    public GameSession get(long id) {
+        GameSession session = shard(id).sessions.get(id);
+        if (session != null)
+            session.touch();
+        return session;
+    }
+
+    /**
+     * Looks up a session by the id used in urls
+     *
+     * @param key Identifier of the session as returned by {@link GameSession#getKey()}
+     * @return The session, or null if the key is malformed or there is no such session
+     */
+    public GameSession get(String key) {
+        long id = parse(key);
+        return id < 0 ? null : get(id);
+    }
+
+    /**
+     * Removes a session from the registry
+     *
+     * @param id Identifier of the session
+     * @return The removed session, or null if there was no such session
+     */
+    public GameSession remove(long id) {
+        GameSession session = shard(id).remove(id);
+        if (session != null)
+            ended(session);
+        return session;
+    }
+
+    /**
+     * Evicts every session which has not been used within the idle timeout
+     *
+     * @return The number of sessions evicted
+     */
+    public int evictIdle() {
+        long now = System.nanoTime();
+        int evicted = 0;
+        for (Shard shard : shards) {
+            for (GameSession session : shard.sessions.values()) {
+                if (!session.isPinned() && now - session.lastAccess() > idleNanos && shard.remove(session)) {
+                    ended(session);
+                    evicted++;
+                }
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Performs an action for every registered session, without marking any of them as used
+     *
+     * @param action The action to perform
+     */
+    public void forEach(Consumer<GameSession> action) {
+        for (Shard shard : shards) {
+            shard.sessions.values().forEach(action);
+        }
+    }
+
+    /**
+     * @return The number of sessions currently registered
+     */
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            size += shard.sessions.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return The estimated heap used by all registered sessions, in bytes
+     */
+    public long usedBytes() {
+        return usedBytes.get();
+    }
+
+    /**
+     * Accounts for a new session, evicting sampled least recently used sessions until it fits under the memory cap.
+     * Each caller evicts only while its own session does not fit, so concurrent callers do not evict for each other.
+     *
+     * @param bytes Estimated size of the new session
+     * @throws UnavailableException if the cap cannot be honored
+     */
+    private void reserve(long bytes) {
+        while (true) {
+            long used = usedBytes.get();
+            if (used + bytes <= maxBytes) {
+                if (usedBytes.compareAndSet(used, used + bytes))
+                    return;
+            } else if (!evictSampled()) {
+                throw new UnavailableException("Too many games are being played on this server");
+            }
+        }
+    }
+
+    /**
+     * Evicts the least recently used of a few sessions sampled from a random shard, moving on to the next shard while
+     * the shard has no session which may be evicted
+     *
+     * @return True if a session was evicted, false if no session may be evicted
+     */
+    private boolean evictSampled() {
+        ThreadLocalRandom rand = ThreadLocalRandom.current();
+        int start = rand.nextInt(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            GameSession victim = shards[(start + i) & shardMask].evictSample(rand);
+            if (victim != null) {
+                ended(victim);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Releases the memory of a session removed from its shard and tells the listener it ended
+     *
+     * @param session The removed session
+     */
+    private void ended(GameSession session) {
+        usedBytes.addAndGet(-session.estimatedBytes());
+        session.end();
+        listener.ended(session);
+    }
+
+    private Shard shard(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return shards[(int) (h >>> 32) & shardMask];
+    }
+
+    /**
+     * Formats a session id for use in urls
+     *
+     * @param id Identifier of the session
+     * @return The id in hexadecimal
+     */
+    static String format(long id) {
+        return Long.toHexString(id);
+    }
+
+    /**
+     * Parses a session id from a url
+     *
+     * @param key The id in hexadecimal
+     * @return The id, or -1 if the key is malformed
+     */
+    static long parse(String key) {
+        if (key == null || key.isEmpty() || key.length() > 16)
+            return -1;
+        try {
+            return Long.parseLong(key, 16);
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * One partition of the registry. Sessions are looked up without locking, while adding and removing them takes the
+     * lock of the shard, which also guards the dense array of the sessions which may be evicted that eviction samples.
+     */
+    private static class Shard {
+        private final ConcurrentHashMap<Long, GameSession> sessions = new ConcurrentHashMap<>();
+        private GameSession[] evictable = new GameSession[16];
+        private int count;
+
+        /**
+         * @param session The session to add
+         * @return True if the session was added, false if its id is taken
+         */
+        synchronized boolean add(GameSession session) {
+            if (sessions.putIfAbsent(session.getId(), session) != null)
+                return false;
+            if (!session.isPinned()) {
+                if (count == evictable.length)
+                    evictable = Arrays.copyOf(evictable, count * 2);
+                evictable[count] = session;
+                session.slot = count++;
+            }
+            return true;
+        }
+
+        /**
+         * @param id Identifier of the session to remove
+         * @return The removed session, or null if there was no such session
+         */
+        synchronized GameSession remove(long id) {
+            GameSession session = sessions.remove(id);
+            if (session != null)
+                unlink(session);
+            return session;
+        }
+
+        /**
+         * @param session The session to remove
+         * @return True if the session was removed, false if it had already been
+         */
+        synchronized boolean remove(GameSession session) {
+            if (!sessions.remove(session.getId(), session))
+                return false;
+            unlink(session);
+            return true;
+        }
+
+        /**
+         * Removes the least recently used of {@link #EVICTION_SAMPLES} sessions picked at random
+         *
+         * @param rand The random generator picking the sessions
+         * @return The removed session, or null if the shard has no session which may be evicted
+         */
+        synchronized GameSession evictSample(Random rand) {
+            if (count == 0)
+                return null;
+            GameSession oldest = null;
+            for (int i = 0; i < Math.min(EVICTION_SAMPLES, count); i++) {
+                GameSession session = evictable[rand.nextInt(count)];
+                if (oldest == null || session.lastAccess() - oldest.lastAccess() < 0)
+                    oldest = session;
+            }
+            sessions.remove(oldest.getId(), oldest);
+            unlink(oldest);
+            return oldest;
+        }
+
+        private void unlink(GameSession session) {
+            int slot = session.slot;
+            if (slot < 0)
+                return;
+            GameSession last = evictable[--count];
+            evictable[slot] = last;
+            last.slot = slot;
+            evictable[count] = null;
+            session.slot = -1;
+        }
+    }
+}
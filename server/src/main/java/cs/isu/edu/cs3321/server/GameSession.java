@@ -0,0 +1,143 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.server;
+
+import cs.isu.edu.cs3321.lightsout.ConcurrentGame;
+import cs.isu.edu.cs3321.lightsout.GameSnapshot;
+import cs.isu.edu.cs3321.lightsout.MoveLog;
+import lombok.Getter;
+
+/**
+ * A single game hosted by the server, along with the bookkeeping the registry needs to evict it
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public class GameSession {
+
+    /**
+     * Rough number of bytes of heap held by a session, its game and its entry in the registry, besides the board
+     */
+    static final long ESTIMATED_BYTES = 256;
+
+    @Getter
+    private final long id;
+    @Getter
+    private final ConcurrentGame game;
+    @Getter
+    private final boolean pinned;
+    private final long estimatedBytes;
+    private volatile long lastAccess;
+    private volatile EncodedState encoded;
+    private volatile boolean ended;
+    /**
+     * Position of this session among the sessions its shard may evict, or -1 if it is not among them, guarded by the
+     * shard
+     */
+    int slot = -1;
+
+    /**
+     * Constructor
+     *
+     * @param id     Identifier of the session
+     * @param game   The game played in this session
+     * @param pinned True if the session must never be evicted
+     * @param bytes  The approximate heap footprint of the session, as given by {@link #estimateBytes(int, int)}
+     */
+    GameSession(long id, ConcurrentGame game, boolean pinned, long bytes) {
+        this.id = id;
+        this.game = game;
+        this.pinned = pinned;
+        this.estimatedBytes = bytes;
+        touch();
+    }
+
+    /**
+     * Estimates the heap held by a session, allowing for the board of the current snapshot and one being replaced, for
+     * the serialized forms of the current snapshot and for the budget of its {@link MoveLog}
+     *
+     * @param width  Number of columns in the board
+     * @param height Number of rows in the board
+     * @return The approximate footprint, in bytes
+     */
+    static long estimateBytes(int width, int height) {
+        long kept = EncodedState.estimateBytes(width, height) + MoveLog.budget(width, height);
+        if ((long) width * height <= Long.SIZE)
+            return ESTIMATED_BYTES + kept;
+        long row = 16 + 8L * ((width + 63) / 64);
+        return ESTIMATED_BYTES + kept + 2 * height * (row + 8);
+    }
+
+    /**
+     * @return The identifier of this session as it appears in urls
+     */
+    public String getKey() {
+        return GameRegistry.format(id);
+    }
+
+    /**
+     * Returns the serialized forms of a state of this game, which are kept until the game changes
+     *
+     * @param snapshot The current state of the game
+     * @return The forms of the state, or null if the board is too large for them to be kept
+     */
+    EncodedState encoded(GameSnapshot snapshot) {
+        EncodedState current = encoded;
+        if (current != null && current.getSnapshot() == snapshot)
+            return current;
+        if (!EncodedState.cached(snapshot.getWidth(), snapshot.getHeight()))
+            return null;
+        current = new EncodedState(snapshot);
+        encoded = current;
+        return current;
+    }
+
+    /**
+     * Marks the session as removed from the registry, before the listeners are told it ended
+     */
+    void end() {
+        ended = true;
+    }
+
+    /**
+     * @return True once the session has been removed from the registry
+     */
+    boolean isEnded() {
+        return ended;
+    }
+
+    /**
+     * Marks the session as being used now
+     */
+    void touch() {
+        lastAccess = System.nanoTime();
+    }
+
+    /**
+     * @return The value of {@link System#nanoTime()} when this session was last used
+     */
+    long lastAccess() {
+        return lastAccess;
+    }
+
+    /**
+     * @return The approximate heap footprint of this session, in bytes
+     */
+    long estimatedBytes() {
+        return estimatedBytes;
+    }
+}
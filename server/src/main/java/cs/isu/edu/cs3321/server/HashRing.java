@@ -0,0 +1,122 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Consistent hashing of game ids onto the nodes of a cluster. Each node is placed at {@link #POINTS_PER_NODE} points
+ * of a 64 bit ring, and a game belongs to the first node at or after the hash of its id, wrapping around. When a node
+ * joins or leaves, only the games between its points and the points before them change owner. Rings are immutable,
+ * and built from the same set of nodes they place every game on the same node on every member of the cluster.
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public final class HashRing {
+
+    /**
+     * Number of points of the ring held by each node, which evens out the share of the games each node owns
+     */
+    public static final int POINTS_PER_NODE = 128;
+
+    private final List<String> nodes;
+    private final long[] points;
+    private final String[] owners;
+
+    /**
+     * Constructor
+     *
+     * @param nodes The addresses of the nodes, as {@code host:port}
+     * @throws IllegalArgumentException if there are no nodes
+     */
+    public HashRing(Collection<String> nodes) {
+        if (nodes.isEmpty())
+            throw new IllegalArgumentException("A ring needs at least one node");
+        this.nodes = List.copyOf(new TreeSet<>(nodes));
+        long[][] placed = new long[this.nodes.size() * POINTS_PER_NODE][];
+        int next = 0;
+        for (int n = 0; n < this.nodes.size(); n++) {
+            for (int i = 0; i < POINTS_PER_NODE; i++) {
+                placed[next++] = new long[]{hash(this.nodes.get(n) + "#" + i), n};
+            }
+        }
+        // ties are broken by node so every member orders the points alike
+        Arrays.sort(placed, (a, b) -> a[0] != b[0] ? Long.compareUnsigned(a[0], b[0]) : Long.compare(a[1], b[1]));
+        points = new long[placed.length];
+        owners = new String[placed.length];
+        for (int i = 0; i < placed.length; i++) {
+            points[i] = placed[i][0];
+            owners[i] = this.nodes.get((int) placed[i][1]);
+        }
+    }
+
+    /**
+     * @return The addresses of the nodes of the ring, in order
+     */
+    public List<String> nodes() {
+        return nodes;
+    }
+
+    /**
+     * Finds the node owning a game
+     *
+     * @param id The id of the game
+     * @return The address of the node
+     */
+    public String owner(long id) {
+        long h = mix(id);
+        int low = 0;
+        int high = points.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(points[mid], h) < 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return owners[low == points.length ? 0 : low];
+    }
+
+    /**
+     * Hashes a string with 64 bit FNV-1a over its UTF-8 bytes, finished by {@link #mix(long)}
+     */
+    private static long hash(String key) {
+        long h = 0xCBF29CE484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xFF;
+            h *= 0x100000001B3L;
+        }
+        return mix(h);
+    }
+
+    /**
+     * Spreads the bits of a value over the whole ring, the finalizer of MurmurHash3
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB93FE1A85B53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -16,16 +16,31 @@
  */
 package cs.isu.edu.cs3321.server;
 
-import cs.isu.edu.cs3321.lightsout.Game;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import cs.isu.edu.cs3321.lightsout.BoardGenerator;
+import cs.isu.edu.cs3321.lightsout.Constants;
+import cs.isu.edu.cs3321.lightsout.MoveLog;
+import cs.isu.edu.cs3321.lightsout.SolutionCache;
+import cs.isu.edu.cs3321.lightsout.UnavailableException;
 import io.javalin.Javalin;
+import io.javalin.http.Handler;
+import io.javalin.plugin.json.JavalinJackson;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
 
-import java.util.List;
-import java.util.Objects;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
 
-import static io.javalin.apibuilder.ApiBuilder.get;
-import static io.javalin.apibuilder.ApiBuilder.post;
+import static io.javalin.apibuilder.ApiBuilder.*;
 
 /**
  * The Lights Out Microservice
@@ -36,34 +51,310 @@ import static io.javalin.apibuilder.ApiBuilder.post;
 public class LOServer {
 
     /**
-     * Entry point from the command line
+     * Entry point from the command line. The game registry can be tuned with the {@code LO_SHARDS},
+     * {@code LO_IDLE_TIMEOUT} (seconds) and {@code LO_MAX_MEMORY} (megabytes) environment variables, or the
+     * equivalent {@code lo.shards}, {@code lo.idle.timeout} and {@code lo.max.memory} system properties. Setting
+     * {@code LO_SEED} ({@code lo.seed}) makes the generated boards reproducible.
+     * <p>
+     * Setting {@code LO_JOURNAL_DIR} ({@code lo.journal.dir}) journals every game to that directory and recovers them
+     * on startup. The journal is tuned with {@code LO_JOURNAL_SEGMENT} (megabytes per segment, default 64),
+     * {@code LO_JOURNAL_FLUSH} (milliseconds between forces to disk, default 10) and {@code LO_JOURNAL_SNAPSHOT}
+     * (seconds between snapshots, default 300). The default game of the first release is journaled under the id
+     * {@code 0}. Records the journal fails to write are counted in {@code lightsout_journal_write_failures_total},
+     * and {@code /api/status} answers 503 until a record is written again.
+     * <p>
+     * Solutions are cached, up to {@code LO_SOLUTIONS_CACHE} boards per board size (default 65536) for boards of up to
+     * 64 cells and {@code LO_SOLUTIONS_WIDE} megabytes per board size (default 16) for larger boards. Setting
+     * {@code LO_SOLUTIONS_TABLE} to a comma separated list of tables written by {@link SolutionCache} answers every
+     * board of those sizes from the memory mapped tables instead.
+     * <p>
+     * Requests are handled by a pool of platform threads sized by {@code LO_THREADS_MAX} (default 200),
+     * {@code LO_THREADS_MIN} (default 8) and {@code LO_THREADS_IDLE} (milliseconds before a spare thread exits, default
+     * 60000). Setting {@code LO_THREADS} to {@code virtual} instead handles each request on its own virtual thread,
+     * which needs Java 21 or later. The server listens on {@code LO_PORT} (default 7000).
+     * <p>
+     * Resets asking for a difficulty take their boards from pools of {@code LO_POOL_SIZE} boards per size and
+     * difficulty (default 32), filled in the background by {@code LO_POOL_THREADS} workers (default 1). The move
+     * history of each game takes a checkpoint of the board every {@code LO_HISTORY_CHECKPOINT} moves (default 64).
+     * <p>
+     * Setting {@code LO_CLUSTER_SEEDS} to a comma separated list of {@code host:port} addresses of other servers joins
+     * them in a {@link Cluster}, which spreads the games across the servers. {@code LO_CLUSTER_SELF} is the address the
+     * other servers reach this one at (default {@code localhost} and the port), and {@code LO_CLUSTER_HEARTBEAT} the
+     * milliseconds between heartbeats (default 1000).
+     * <p>
+     * Every setting may also be given as an argument of the form {@code --name=value}, where the name drops the
+     * {@code lo.} prefix of the system property, such as {@code --threads=virtual} or {@code --threads.max=400}.
+     * Arguments take precedence over system properties and the environment.
      *
-     * @param args Command line arguments (currently nothing is supported)
+     * @param args Settings, each of the form {@code --name=value}
+     * @throws IOException              if the journal cannot be opened
+     * @throws IllegalArgumentException if an argument is not of the form {@code --name=value}
      */
-    public static void main(String[] args) {
-        Game game = new Game();
-        QueuedThreadPool queuedThreadPool = new QueuedThreadPool(200, 8, 60000);
+    public static void main(String[] args) throws IOException {
+        for (String arg : args) {
+            int split = arg.indexOf('=');
+            if (!arg.startsWith("--") || split < 3)
+                throw new IllegalArgumentException("Expected --name=value but was " + arg);
+            System.setProperty("lo." + arg.substring(2, split), arg.substring(split + 1));
+        }
 
-        Javalin app = Javalin.create(config ->
-                config.server(() ->
-                        new Server(queuedThreadPool))).start(7000);
+        String seed = setting("lo.seed");
+        BoardGenerator generator = seed == null ? BoardGenerator.DEFAULT :
+                new BoardGenerator(BoardGenerator.Mode.SOLVABLE, BoardGenerator.seeded(Long.parseLong(seed)));
+        GameRegistry registry = new GameRegistry(
+                (int) setting("lo.shards", 4L * Runtime.getRuntime().availableProcessors()),
+                Duration.ofSeconds(setting("lo.idle.timeout", 1800)),
+                setting("lo.max.memory", 256) * 1024 * 1024,
+                generator);
 
-        app.routes(() -> {
-            get("/api/state", ctx -> ctx.json(game.getState()));
-            post("/api/update", ctx -> {
-                if (Objects.equals(ctx.contentType(), "application/json")) {
-                    List<Integer> list = ctx.bodyAsClass(List.class);
-                    game.update(list.get(0), list.get(1));
-                    ctx.json(game.getState());
+        SolutionCache.setCapacity(setting("lo.solutions.cache", SolutionCache.DEFAULT_CAPACITY));
+        SolutionCache.setWideCapacity(setting("lo.solutions.wide", SolutionCache.DEFAULT_WIDE_BYTES >> 20) << 20);
+        String tables = setting("lo.solutions.table");
+        if (tables != null) {
+            for (String table : tables.split(",")) {
+                SolutionCache.attachTable(Paths.get(table.trim()));
+            }
+        }
+
+        ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "session-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictor.scheduleWithFixedDelay(registry::evictIdle, 1, 1, TimeUnit.MINUTES);
+
+        GameEvents events = new GameEvents();
+        String journalDir = setting("lo.journal.dir");
+        GameJournal journal = null;
+        if (journalDir != null) {
+            journal = GameJournal.open(Paths.get(journalDir), registry, generator,
+                    (int) setting("lo.journal.segment", 64) * 1024 * 1024,
+                    Duration.ofMillis(setting("lo.journal.flush", 10)),
+                    Duration.ofSeconds(setting("lo.journal.snapshot", 300)));
+            events.add(journal);
+        }
+
+        BoardPool pool = new BoardPool(
+                (int) setting("lo.pool.size", BoardPool.DEFAULT_CAPACITY),
+                (int) setting("lo.pool.threads", 1),
+                seed == null ? ThreadLocalRandom::current : BoardGenerator.seeded(Long.parseLong(seed)));
+        pool.generator(Constants.MAX_X, Constants.MAX_Y);
+
+        int port = (int) setting("lo.port", 7000);
+        String seeds = setting("lo.cluster.seeds");
+        Cluster cluster = null;
+        if (seeds != null) {
+            String self = setting("lo.cluster.self");
+            cluster = new Cluster(self == null ? "localhost:" + port : self, registry, generator, events);
+        }
+
+        Javalin app = start(port, registry, threadPool(), events, pool, cluster, journal);
+        if (cluster != null) {
+            cluster.join(Arrays.stream(seeds.split(",")).map(String::trim).collect(Collectors.toList()),
+                    Duration.ofMillis(setting("lo.cluster.heartbeat", 1000)));
+        }
+
+        GameJournal closing = journal;
+        Cluster leaving = cluster;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (leaving != null)
+                leaving.leave();
+            app.stop();
+            pool.close();
+            if (closing != null) {
+                try {
+                    closing.close();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
                 }
-            });
-            get("/api/reset", ctx -> {
-                game.reset();
-                ctx.json(game.getState());
-            });
+            }
+        }, "shutdown"));
+    }
+
+    /**
+     * Starts the service on the provided port
+     *
+     * @param port       Port to listen on, 0 picks a free port
+     * @param registry   Registry holding the games hosted by the service
+     * @param threadPool Pool of threads used by Jetty to handle requests
+     * @return The running application
+     */
+    public static Javalin start(int port, GameRegistry registry, ThreadPool threadPool) {
+        return start(port, registry, threadPool, new GameEvents());
+    }
+
+    /**
+     * Starts the service on the provided port, telling the provided listeners of every change to the games. Metrics of
+     * the requests, the games and the thread pool are published at {@code /metrics} in the Prometheus text format.
+     *
+     * @param port       Port to listen on, 0 picks a free port
+     * @param registry   Registry holding the games hosted by the service
+     * @param threadPool Pool of threads used by Jetty to handle requests
+     * @param events     Listeners of every change, to which the WebSocket channel is added
+     * @return The running application
+     */
+    public static Javalin start(int port, GameRegistry registry, ThreadPool threadPool, GameEvents events) {
+        return start(port, registry, threadPool, events,
+                new BoardPool(BoardPool.DEFAULT_CAPACITY, 1, ThreadLocalRandom::current));
+    }
+
+    /**
+     * Starts the service on the provided port, telling the provided listeners of every change to the games and taking
+     * the boards of resets which ask for a difficulty from the provided pool
+     *
+     * @param port       Port to listen on, 0 picks a free port
+     * @param registry   Registry holding the games hosted by the service
+     * @param threadPool Pool of threads used by Jetty to handle requests
+     * @param events     Listeners of every change, to which the WebSocket channel is added
+     * @param pool       Boards of every difficulty
+     * @return The running application
+     */
+    public static Javalin start(int port, GameRegistry registry, ThreadPool threadPool, GameEvents events,
+                                BoardPool pool) {
+        return start(port, registry, threadPool, events, pool, null);
+    }
+
+    /**
+     * Starts the service on the provided port as a node of a cluster. Requests for a single game are forwarded to the
+     * node holding it, and the internal routes of the cluster are served under {@code /internal}. The single game
+     * routes of the first release and the WebSocket route are served by each node on its own.
+     *
+     * @param port       Port to listen on, 0 picks a free port
+     * @param registry   Registry holding the games hosted by the service
+     * @param threadPool Pool of threads used by Jetty to handle requests
+     * @param events     Listeners of every change, to which the WebSocket channel is added
+     * @param pool       Boards of every difficulty
+     * @param cluster    The cluster of this node, not yet joined, or null to serve every game here
+     * @return The running application
+     */
+    public static Javalin start(int port, GameRegistry registry, ThreadPool threadPool, GameEvents events,
+                                BoardPool pool, Cluster cluster) {
+        return start(port, registry, threadPool, events, pool, cluster, null);
+    }
+
+    /**
+     * Starts the service on the provided port as a node of a cluster whose games are journaled. The failed writes of
+     * the journal are published at {@code /metrics}, and {@code /api/status} answers 503 while the journal is failing.
+     *
+     * @param port       Port to listen on, 0 picks a free port
+     * @param registry   Registry holding the games hosted by the service
+     * @param threadPool Pool of threads used by Jetty to handle requests
+     * @param events     Listeners of every change, to which the WebSocket channel is added
+     * @param pool       Boards of every difficulty
+     * @param cluster    The cluster of this node, not yet joined, or null to serve every game here
+     * @param journal    The journal of the games, already listening to the events, or null if they are not journaled
+     * @return The running application
+     */
+    public static Javalin start(int port, GameRegistry registry, ThreadPool threadPool, GameEvents events,
+                                BoardPool pool, Cluster cluster, GameJournal journal) {
+        GameChannel channel = new GameChannel(registry, events);
+        ServerMetrics metrics = new ServerMetrics();
+        GameHistory history = new GameHistory(
+                (int) setting("lo.history.checkpoint", MoveLog.DEFAULT_CHECKPOINT_INTERVAL));
+        events.add(history);
+        events.add(channel);
+        events.add(metrics);
+        registry.setListener(events);
+        metrics.bind(registry, threadPool);
+        if (journal != null)
+            metrics.bind(journal);
+        GameController controller = new GameController(registry, events, pool, history);
+
+        Javalin app = Javalin.create(config -> {
+            config.server(() -> new Server(threadPool));
+            config.jsonMapper(metrics.timed(new JavalinJackson()));
+        }).start(port);
+
+        app.exception(UnavailableException.class, (ex, ctx) -> ctx.status(503).result(ex.getMessage()));
+        app.exception(IndexOutOfBoundsException.class, (ex, ctx) -> ctx.status(400).result(ex.getMessage()));
+        app.exception(IllegalArgumentException.class, (ex, ctx) -> ctx.status(400).result(ex.getMessage()));
+        app.exception(JsonProcessingException.class, (ex, ctx) -> ctx.status(400).result("Malformed JSON body"));
+
+        UnaryOperator<Handler> routed = cluster == null ? handler -> handler : cluster::routed;
+        app.routes(() -> {
+            get("/api/state", metrics.timed("GET", "/api/state", controller::state));
+            post("/api/update", metrics.timed("POST", "/api/update", controller::update));
+            post("/api/update/batch", metrics.timed("POST", "/api/update/batch", controller::updateBatch));
+            get("/api/reset", metrics.timed("GET", "/api/reset", controller::reset));
+            get("/api/solve", metrics.timed("GET", "/api/solve", controller::solve));
+            get("/api/undo", metrics.timed("GET", "/api/undo", controller::undo));
+            get("/api/redo", metrics.timed("GET", "/api/redo", controller::redo));
+            get("/api/history", metrics.timed("GET", "/api/history", controller::history));
             get("/api/status", ctx -> {
-                ctx.result("OK");
+                if (journal != null && !journal.isHealthy())
+                    ctx.status(503).result("Journal cannot be written");
+                else
+                    ctx.result("OK");
             });
+            get("/metrics", metrics::scrape);
+            path("/api/games", () -> {
+                post(metrics.timed("POST", "/api/games", controller::create));
+                path("{id}", () -> {
+                    delete(metrics.timed("DELETE", "/api/games/{id}", routed.apply(controller::delete)));
+                    get("state", metrics.timed("GET", "/api/games/{id}/state", routed.apply(controller::state)));
+                    post("update", metrics.timed("POST", "/api/games/{id}/update", routed.apply(controller::update)));
+                    post("update/batch", metrics.timed("POST", "/api/games/{id}/update/batch",
+                            routed.apply(controller::updateBatch)));
+                    get("reset", metrics.timed("GET", "/api/games/{id}/reset", routed.apply(controller::reset)));
+                    get("solve", metrics.timed("GET", "/api/games/{id}/solve", routed.apply(controller::solve)));
+                    get("undo", metrics.timed("GET", "/api/games/{id}/undo", routed.apply(controller::undo)));
+                    get("redo", metrics.timed("GET", "/api/games/{id}/redo", routed.apply(controller::redo)));
+                    get("history", metrics.timed("GET", "/api/games/{id}/history", routed.apply(controller::history)));
+                    ws("ws", channel::configure);
+                });
+            });
+            if (cluster != null) {
+                path("/internal", () -> {
+                    get("cluster/members", cluster::members);
+                    post("cluster/join", cluster::joined);
+                    post("cluster/leave", cluster::left);
+                    put("games/{id}", cluster::received);
+                });
+            }
         });
+        return app;
+    }
+
+    /**
+     * Creates the pool of threads which handles requests, as chosen by the {@code lo.threads} setting
+     *
+     * @return A pool of virtual threads if the setting is {@code virtual}, otherwise a pool of platform threads
+     * @throws IllegalArgumentException if the setting names neither kind of thread
+     */
+    static ThreadPool threadPool() {
+        String mode = setting("lo.threads");
+        if ("virtual".equalsIgnoreCase(mode))
+            return new VirtualThreadPool();
+        if (mode != null && !"platform".equalsIgnoreCase(mode))
+            throw new IllegalArgumentException("Threads must be platform or virtual, not " + mode);
+        return new QueuedThreadPool(
+                (int) setting("lo.threads.max", 200),
+                (int) setting("lo.threads.min", 8),
+                (int) setting("lo.threads.idle", 60000));
+    }
+
+    /**
+     * Reads a numeric setting from the system properties, falling back to the environment and then to a default
+     *
+     * @param name         Name of the system property, the environment variable is the upper case form with dots
+     *                     replaced by underscores
+     * @param defaultValue Value used when the setting is not provided
+     * @return The value of the setting
+     */
+    static long setting(String name, long defaultValue) {
+        String value = setting(name);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+
+    /**
+     * Reads a setting from the system properties, falling back to the environment
+     *
+     * @param name Name of the system property, the environment variable is the upper case form with dots replaced by
+     *             underscores
+     * @return The trimmed value of the setting, or null if it is not provided
+     */
+    static String setting(String name) {
+        String value = System.getProperty(name, System.getenv(name.toUpperCase().replace('.', '_')));
+        return value == null || value.isBlank() ? null : value.trim();
     }
 }
@@ -0,0 +1,269 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.server;
+
+import cs.isu.edu.cs3321.lightsout.GameSnapshot;
+import cs.isu.edu.cs3321.lightsout.WireEncoder;
+import cs.isu.edu.cs3321.lightsout.WireFormat;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Buffers reused by every move handled on a thread, so a move is read and answered without allocating. The move is
+ * parsed straight from the bytes of the request body, and the state is written into a buffer sized for the board and
+ * copied to the response, either in the binary form of {@link WireFormat} or as the same JSON Jackson writes for a
+ * {@code GameState}. A thread keeps its response buffer while it stays under {@link #MAX_RETAINED} bytes, larger boards
+ * are answered from a buffer of their own. In the virtual thread mode each request runs on a new thread, so the buffers
+ * are only reused by the platform thread pool.
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+final class MoveBuffer {
+
+    /**
+     * Largest response buffer kept by a thread between moves
+     */
+    static final int MAX_RETAINED = 1 << 16;
+
+    /**
+     * Largest request body accepted for a move, which leaves room for whitespace around a JSON pair
+     */
+    private static final int MAX_BODY = 256;
+    private static final int INITIAL_CAPACITY = 512;
+    private static final byte[] BOARD = bytes("{\"board\":");
+    private static final byte[] WINNER = bytes("],\"winner\":");
+    private static final byte[] TRUE = bytes("true");
+    private static final byte[] FALSE = bytes("false");
+    private static final byte[] VERSION = bytes(",\"version\":");
+    private static final ThreadLocal<MoveBuffer> BUFFERS = ThreadLocal.withInitial(MoveBuffer::new);
+
+    private final byte[] body = new byte[MAX_BODY];
+    private byte[] out = new byte[INITIAL_CAPACITY];
+    private ByteBuffer wrapped = ByteBuffer.wrap(out);
+    private int length;
+    private int position;
+
+    private MoveBuffer() {
+    }
+
+    /**
+     * @return The buffers of the calling thread
+     */
+    static MoveBuffer forThread() {
+        return BUFFERS.get();
+    }
+
+    /**
+     * Reads the body of a request, which must hold a single move
+     *
+     * @param req The request
+     * @throws IOException              if the body cannot be read
+     * @throws IllegalArgumentException if the body is too large to be a move
+     */
+    void read(HttpServletRequest req) throws IOException {
+        InputStream in = req.getInputStream();
+        length = 0;
+        int read;
+        while (length < MAX_BODY && (read = in.read(body, length, MAX_BODY - length)) > 0) {
+            length += read;
+        }
+        if (length == MAX_BODY && in.read() >= 0)
+            throw new IllegalArgumentException("A move cannot be larger than " + MAX_BODY + " bytes");
+    }
+
+    /**
+     * Parses the body as a binary move
+     *
+     * @return The column in the upper 32 bits and the row in the lower 32 bits
+     * @throws IllegalArgumentException if the body is not a move
+     */
+    long binaryMove() {
+        if (length != WireFormat.MOVE_BYTES)
+            throw new IllegalArgumentException("A move is " + WireFormat.MOVE_BYTES + " bytes, not " + length);
+        long x = (body[0] & 0xFF) << 8 | body[1] & 0xFF;
+        long y = (body[2] & 0xFF) << 8 | body[3] & 0xFF;
+        return x << 32 | y;
+    }
+
+    /**
+     * Parses the body as a JSON [x, y] pair
+     *
+     * @return The column in the upper 32 bits and the row in the lower 32 bits
+     * @throws IllegalArgumentException if the body is not a pair of integers
+     */
+    long jsonMove() {
+        position = 0;
+        expect('[');
+        int x = integer();
+        expect(',');
+        int y = integer();
+        expect(']');
+        skipWhitespace();
+        if (position != length)
+            throw new IllegalArgumentException("Malformed JSON body");
+        return (long) x << 32 | y & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Answers a request with a state of its game, in binary if the client accepts it and JSON otherwise
+     *
+     * @param req      The request
+     * @param res      The response
+     * @param snapshot The state to send
+     * @throws IOException if the response cannot be written
+     */
+    void respond(HttpServletRequest req, HttpServletResponse res, GameSnapshot snapshot) throws IOException {
+        String accept = req.getHeader("Accept");
+        boolean binary = accept != null && accept.contains(WireFormat.STATE_TYPE);
+        int width = snapshot.getWidth();
+        int height = snapshot.getHeight();
+        int needed = binary ? WireFormat.encodedLength(width, height) : jsonLength(width, height);
+        if (needed > out.length) {
+            byte[] bigger = new byte[needed];
+            if (needed <= MAX_RETAINED) {
+                out = bigger;
+                wrapped = ByteBuffer.wrap(out);
+            }
+            write(res, binary, snapshot, bigger, ByteBuffer.wrap(bigger));
+        } else {
+            write(res, binary, snapshot, out, wrapped);
+        }
+    }
+
+    private void write(HttpServletResponse res, boolean binary, GameSnapshot snapshot, byte[] target,
+                       ByteBuffer buffer) throws IOException {
+        int size;
+        if (binary) {
+            buffer.clear();
+            WireEncoder.encode(snapshot, buffer);
+            size = buffer.position();
+        } else {
+            size = json(snapshot, target);
+        }
+        res.setHeader("Vary", "Accept");
+        res.setContentType(binary ? WireFormat.STATE_TYPE : "application/json");
+        res.setContentLength(size);
+        res.getOutputStream().write(target, 0, size);
+    }
+
+    /**
+     * Bounds the length of the JSON form of a state
+     *
+     * @param width  Number of columns in the board
+     * @param height Number of rows in the board
+     * @return The most bytes the JSON form of a state of that size takes
+     */
+    static int jsonLength(int width, int height) {
+        // every cell takes two bytes in JSON, each row two more, and the rest fits well within the last 64
+        return 2 * height * (width + 1) + 64;
+    }
+
+    /**
+     * Writes a state in the JSON form of a {@code GameState} into an array of its own
+     *
+     * @param snapshot The state to write
+     * @return The JSON form of the state
+     */
+    static byte[] json(GameSnapshot snapshot) {
+        byte[] target = new byte[jsonLength(snapshot.getWidth(), snapshot.getHeight())];
+        return Arrays.copyOf(target, json(snapshot, target));
+    }
+
+    /**
+     * Writes a state in the JSON form of a {@code GameState}
+     *
+     * @param snapshot The state to write
+     * @param target   Buffer large enough for the state
+     * @return The number of bytes written
+     */
+    private static int json(GameSnapshot snapshot, byte[] target) {
+        int at = put(target, 0, BOARD);
+        for (int y = 0; y < snapshot.getHeight(); y++) {
+            target[at++] = (byte) (y == 0 ? '[' : ',');
+            target[at++] = (byte) '[';
+            for (int x = 0; x < snapshot.getWidth(); x++) {
+                if (x > 0)
+                    target[at++] = (byte) ',';
+                target[at++] = (byte) ('0' + snapshot.get(x, y));
+            }
+            target[at++] = (byte) ']';
+        }
+        at = put(target, at, WINNER);
+        at = put(target, at, snapshot.isWinner() ? TRUE : FALSE);
+        at = put(target, at, VERSION);
+        at = digits(target, at, snapshot.getVersion());
+        target[at++] = (byte) '}';
+        return at;
+    }
+
+    private static int put(byte[] target, int at, byte[] source) {
+        System.arraycopy(source, 0, target, at, source.length);
+        return at + source.length;
+    }
+
+    private static int digits(byte[] target, int at, long value) {
+        int count = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            count++;
+        }
+        for (int i = at + count - 1; i >= at; i--) {
+            target[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return at + count;
+    }
+
+    private void expect(char c) {
+        skipWhitespace();
+        if (position >= length || body[position] != c)
+            throw new IllegalArgumentException("Malformed JSON body");
+        position++;
+    }
+
+    private int integer() {
+        skipWhitespace();
+        boolean negative = position < length && body[position] == '-';
+        if (negative)
+            position++;
+        int start = position;
+        long value = 0;
+        while (position < length && body[position] >= '0' && body[position] <= '9' && value <= Integer.MAX_VALUE) {
+            value = value * 10 + body[position++] - '0';
+        }
+        if (position == start || value > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Malformed JSON body");
+        return (int) (negative ? -value : value);
+    }
+
+    private void skipWhitespace() {
+        while (position < length && (body[position] == ' ' || body[position] == '\t' || body[position] == '\n'
+                || body[position] == '\r')) {
+            position++;
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
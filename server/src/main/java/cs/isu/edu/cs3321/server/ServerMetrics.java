@@ -0,0 +1,264 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.server;
+
+import cs.isu.edu.cs3321.lightsout.Board;
+import cs.isu.edu.cs3321.lightsout.GameSnapshot;
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import io.javalin.plugin.json.JsonMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jetty.JettyServerThreadPoolMetrics;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import io.prometheus.client.exporter.common.TextFormat;
+import lombok.Getter;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics of the server, published in the Prometheus text format. Every meter is registered up front, so recording a
+ * request, a move or a JSON conversion only updates counters and never allocates. Moves are counted as a listener of
+ * the games, so the rate of moves is {@code rate(lightsout_moves_total[1m])}.
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public class ServerMetrics implements GameListener {
+
+    @Getter
+    private final PrometheusMeterRegistry registry;
+    private final Counter moves;
+    private final Counter batches;
+    private final Counter resets;
+    private final Counter wins;
+    private final Timer serialize;
+    private final Timer deserialize;
+
+    /**
+     * Constructor, publishing to a new registry
+     */
+    public ServerMetrics() {
+        this(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param registry The registry to publish to
+     */
+    public ServerMetrics(PrometheusMeterRegistry registry) {
+        this.registry = registry;
+        moves = Counter.builder("lightsout.moves")
+                .description("Single cells selected, over HTTP or WebSocket")
+                .register(registry);
+        batches = Counter.builder("lightsout.batches")
+                .description("Sequences of moves applied as one change")
+                .register(registry);
+        resets = Counter.builder("lightsout.resets")
+                .description("Games reset to a new board")
+                .register(registry);
+        wins = Counter.builder("lightsout.wins")
+                .description("Moves which turned the last light of a game off")
+                .register(registry);
+        serialize = timer("lightsout.json", "Time spent converting between objects and JSON", "write");
+        deserialize = timer("lightsout.json", "Time spent converting between objects and JSON", "read");
+    }
+
+    /**
+     * Publishes the size of the registry and the load on the pool of request threads
+     *
+     * @param games      The registry of games hosted by the server
+     * @param threadPool The pool used by Jetty to handle requests
+     */
+    public void bind(GameRegistry games, ThreadPool threadPool) {
+        Gauge.builder("lightsout.games.active", games, GameRegistry::size)
+                .description("Games currently hosted")
+                .register(registry);
+        Gauge.builder("lightsout.games.memory", games, GameRegistry::usedBytes)
+                .description("Estimated heap used by the hosted games")
+                .baseUnit("bytes")
+                .register(registry);
+        new JettyServerThreadPoolMetrics(threadPool, Tags.empty()).bindTo(registry);
+        if (threadPool instanceof QueuedThreadPool) {
+            Gauge.builder("jetty.threads.utilization", (QueuedThreadPool) threadPool,
+                            QueuedThreadPool::getUtilizationRate)
+                    .description("Fraction of the maximum number of threads which are busy")
+                    .register(registry);
+        }
+    }
+
+    /**
+     * Publishes the records the journal of the games could not write
+     *
+     * @param journal The journal of the games hosted by the server
+     */
+    public void bind(GameJournal journal) {
+        FunctionCounter.builder("lightsout.journal.write.failures", journal, GameJournal::getWriteFailures)
+                .description("Journal records which could not be written")
+                .register(registry);
+    }
+
+    /**
+     * Wraps a handler so the time it takes is recorded in a histogram of its route
+     *
+     * @param method  The HTTP method of the route
+     * @param uri     The path of the route, with its parameters in braces
+     * @param handler The handler of the route
+     * @return The timed handler
+     */
+    public Handler timed(String method, String uri, Handler handler) {
+        Timer timer = Timer.builder("lightsout.http.requests")
+                .description("Time spent handling requests, by route")
+                .tags("method", method, "uri", uri)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(50_000))
+                .maximumExpectedValue(Duration.ofSeconds(5))
+                .register(registry);
+        return ctx -> {
+            long start = System.nanoTime();
+            try {
+                handler.handle(ctx);
+            } finally {
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        };
+    }
+
+    /**
+     * Wraps a JSON mapper so the time it spends converting objects is recorded
+     *
+     * @param mapper The mapper used by the server
+     * @return The timed mapper
+     */
+    public JsonMapper timed(JsonMapper mapper) {
+        return new JsonMapper() {
+            @Override
+            public String toJsonString(Object obj) {
+                long start = System.nanoTime();
+                try {
+                    return mapper.toJsonString(obj);
+                } finally {
+                    serialize.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            }
+
+            @Override
+            public InputStream toJsonStream(Object obj) {
+                return mapper.toJsonStream(obj);
+            }
+
+            @Override
+            public <T> T fromJsonString(String json, Class<T> targetClass) {
+                long start = System.nanoTime();
+                try {
+                    return mapper.fromJsonString(json, targetClass);
+                } finally {
+                    deserialize.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            }
+
+            @Override
+            public <T> T fromJsonStream(InputStream json, Class<T> targetClass) {
+                return mapper.fromJsonStream(json, targetClass);
+            }
+        };
+    }
+
+    /**
+     * Responds with every metric in the Prometheus text format
+     *
+     * @param ctx The request context
+     */
+    public void scrape(Context ctx) {
+        ctx.contentType(TextFormat.CONTENT_TYPE_004).result(registry.scrape());
+    }
+
+    /**
+     * Counts a move
+     *
+     * @param session The game the move was made in
+     * @param x       The selected column
+     * @param y       The selected row
+     * @param after   The state of the game immediately after the move
+     */
+    @Override
+    public void moved(GameSession session, int x, int y, GameSnapshot after) {
+        moves.increment();
+    }
+
+    /**
+     * Counts a batch of moves
+     *
+     * @param session The game the change was made in
+     * @param moves   The selected cells in the order they were sent, each an [x, y] pair
+     * @param toggles Board whose lights are on where the change toggled the game
+     * @param after   The state of the game immediately after the change
+     */
+    @Override
+    public void toggled(GameSession session, int[][] moves, Board toggles, GameSnapshot after) {
+        batches.increment();
+    }
+
+    /**
+     * Counts a win
+     *
+     * @param session The game which was won
+     * @param after   The state of the game after the winning change
+     */
+    @Override
+    public void won(GameSession session, GameSnapshot after) {
+        wins.increment();
+    }
+
+    /**
+     * Counts a reset
+     *
+     * @param session The game which changed
+     * @param after   The state of the game after the change
+     */
+    @Override
+    public void changed(GameSession session, GameSnapshot after) {
+        resets.increment();
+    }
+
+    /**
+     * Builds a timer of JSON conversions
+     *
+     * @param name        The name of the timer
+     * @param description The description of the timer
+     * @param operation   Whether the timer records reads or writes of JSON
+     * @return The registered timer
+     */
+    private Timer timer(String name, String description, String operation) {
+        return Timer.builder(name)
+                .description(description)
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(1_000))
+                .maximumExpectedValue(Duration.ofMillis(100))
+                .register(registry);
+    }
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.server;
+
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Jetty thread pool which runs every job on a new virtual thread, so the number of requests in flight is not bounded
+ * by a number of platform threads. Virtual threads need Java 21 or later; the executor is looked up when the pool
+ * starts, so the server still builds and runs on older releases in the platform thread mode.
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+public class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool {
+
+    private static final MethodHandle NEW_EXECUTOR = lookup();
+
+    private final AtomicInteger threads = new AtomicInteger();
+    private volatile ExecutorService executor;
+
+    /**
+     * @return True if the running Java release supports virtual threads
+     */
+    public static boolean isSupported() {
+        return NEW_EXECUTOR != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException if the running Java release does not support virtual threads
+     */
+    @Override
+    protected void doStart() throws Exception {
+        if (NEW_EXECUTOR == null)
+            throw new IllegalStateException("Virtual threads need Java 21 or later, running on "
+                    + Runtime.version());
+        try {
+            executor = (ExecutorService) NEW_EXECUTOR.invokeExact();
+        } catch (Throwable ex) {
+            throw new IllegalStateException("Cannot create a virtual thread executor", ex);
+        }
+        super.doStart();
+    }
+
+    /**
+     * Stops accepting jobs and waits up to the stop timeout for running jobs, then interrupts them
+     */
+    @Override
+    protected void doStop() throws Exception {
+        super.doStop();
+        executor.shutdown();
+        if (!executor.awaitTermination(getStopTimeout(), TimeUnit.MILLISECONDS))
+            executor.shutdownNow();
+    }
+
+    /**
+     * Runs a job on a new virtual thread
+     *
+     * @param job The job to run
+     * @throws RejectedExecutionException if the pool is not running
+     */
+    @Override
+    public void execute(Runnable job) {
+        ExecutorService current = executor;
+        if (current == null)
+            throw new RejectedExecutionException("Pool is not started");
+        threads.incrementAndGet();
+        try {
+            current.execute(() -> {
+                try {
+                    job.run();
+                } finally {
+                    threads.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            threads.decrementAndGet();
+            throw ex;
+        }
+    }
+
+    /**
+     * Blocks until the pool is stopped and every job has finished
+     *
+     * @throws InterruptedException if the wait is interrupted
+     */
+    @Override
+    public void join() throws InterruptedException {
+        ExecutorService current = executor;
+        if (current != null)
+            current.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return The number of jobs currently running, each on its own thread
+     */
+    @Override
+    public int getThreads() {
+        return threads.get();
+    }
+
+    /**
+     * @return Zero, as threads are not kept once their job is done
+     */
+    @Override
+    public int getIdleThreads() {
+        return 0;
+    }
+
+    /**
+     * @return False, as a new thread is started for every job
+     */
+    @Override
+    public boolean isLowOnThreads() {
+        return false;
+    }
+
+    /**
+     * Looks up the factory of virtual thread executors
+     *
+     * @return A handle to {@code Executors.newVirtualThreadPerTaskExecutor}, or null if it does not exist
+     */
+    private static MethodHandle lookup() {
+        try {
+            return MethodHandles.publicLookup().findStatic(Executors.class,
+                    "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class));
+        } catch (NoSuchMethodException | IllegalAccessException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return String.format("%s{%s,threads=%d}", getClass().getSimpleName(), getState(), threads.get());
+    }
+}
@@ -0,0 +1,226 @@
+/**
+ * Copyright 2021 Isaac D. Griffith
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package cs.isu.edu.cs3321.server;
+
+import cs.isu.edu.cs3321.lightsout.BoardGenerator;
+import cs.isu.edu.cs3321.lightsout.ConcurrentGame;
+import cs.isu.edu.cs3321.lightsout.GameSnapshot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests the recovery of games from the records a {@link GameJournal} wrote
+ *
+ * @author Isaac D. Griffith
+ * @version 1.0.0
+ */
+class GameJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private GameRegistry registry;
+    private GameJournal journal;
+
+    @BeforeEach
+    void open() throws IOException {
+        registry = registry();
+        journal = GameJournal.open(directory, registry, BoardGenerator.DEFAULT, 1 << 16, Duration.ofMillis(1),
+                Duration.ofHours(1));
+        registry.setListener(journal);
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        journal.close();
+    }
+
+    @Test
+    void recoversMovesAfterTheirState() throws IOException {
+        GameSession session = registry.create();
+        move(session, 0, 0);
+        move(session, 2, 3);
+        GameSnapshot expected = move(session, 4, 1);
+
+        assertRecovered(session.getId(), expected);
+    }
+
+    @Test
+    void ignoresATornTail() throws IOException {
+        GameSession session = registry.create();
+        GameSnapshot expected = move(session, 1, 1);
+        move(session, 3, 2);
+        journal.close();
+        tearLastRecord();
+
+        assertRecovered(session.getId(), expected);
+    }
+
+    @Test
+    void resetReplacesEarlierMoves() throws IOException {
+        GameSession session = registry.create();
+        move(session, 0, 0);
+        move(session, 1, 0);
+        GameSnapshot reset = session.getGame().reset();
+        journal.changed(session, reset);
+        GameSnapshot expected = move(session, 2, 2);
+
+        assertRecovered(session.getId(), expected);
+    }
+
+    @Test
+    void endedGameIsNotRecovered() throws IOException {
+        GameSession session = registry.create();
+        move(session, 0, 0);
+        registry.remove(session.getId());
+
+        assertNull(recover().get(session.getId()));
+    }
+
+    @Test
+    void gameHandedBackUnchangedIsRecovered() throws IOException {
+        GameSession session = registry.create();
+        move(session, 1, 2);
+        GameSnapshot handed = handOff(session);
+        GameSnapshot expected = move(handBack(session.getId(), handed), 3, 3);
+
+        assertRecovered(session.getId(), expected);
+    }
+
+    @Test
+    void gameHandedBackAfterMovesElsewhereIsRecovered() throws IOException {
+        GameSession session = registry.create();
+        move(session, 1, 2);
+        GameSnapshot handed = handOff(session);
+        ConcurrentGame elsewhere = new ConcurrentGame(handed, BoardGenerator.DEFAULT);
+        elsewhere.update(0, 0);
+        GameSnapshot expected = move(handBack(session.getId(), elsewhere.update(4, 4)), 2, 0);
+
+        assertRecovered(session.getId(), expected);
+    }
+
+    /**
+     * Hands a game to another node as {@link Cluster} does once the node has taken it, which journals its end
+     *
+     * @param session The session of the game
+     * @return The state handed over
+     */
+    private GameSnapshot handOff(GameSession session) {
+        GameSnapshot snapshot = session.getGame().freeze();
+        registry.remove(session.getId());
+        return snapshot;
+    }
+
+    /**
+     * Takes a game handed back by another node as {@link Cluster#received} does, which journals its state again
+     *
+     * @param id       Identifier of the game
+     * @param snapshot The state handed back
+     * @return The new session of the game
+     */
+    private GameSession handBack(long id, GameSnapshot snapshot) {
+        GameSession session = registry.restore(id, new ConcurrentGame(snapshot, BoardGenerator.DEFAULT));
+        journal.created(session, snapshot);
+        return session;
+    }
+
+    /**
+     * Plays a move and journals it as the controller does
+     *
+     * @param session The session to play in
+     * @param x       The column of the move
+     * @param y       The row of the move
+     * @return The state of the game after the move
+     */
+    private GameSnapshot move(GameSession session, int x, int y) {
+        GameSnapshot after = session.getGame().update(x, y);
+        journal.moved(session, x, y, after);
+        return after;
+    }
+
+    /**
+     * Recovers the journal and checks that a game comes back in the expected state
+     *
+     * @param id       Identifier of the game
+     * @param expected The state the game must be recovered in
+     * @throws IOException if the journal cannot be read
+     */
+    private void assertRecovered(long id, GameSnapshot expected) throws IOException {
+        GameSession recovered = recover().get(id);
+        assertNotNull(recovered);
+        GameSnapshot actual = recovered.getGame().getSnapshot();
+        assertArrayEquals(expected.toRows(), actual.toRows());
+        assertEquals(expected.getVersion(), actual.getVersion());
+    }
+
+    /**
+     * Closes the journal and recovers its games into a new registry
+     *
+     * @return The registry of the recovered games
+     * @throws IOException if the journal cannot be read
+     */
+    private GameRegistry recover() throws IOException {
+        journal.close();
+        GameRegistry recovered = registry();
+        GameJournal.recover(directory, recovered, BoardGenerator.DEFAULT);
+        return recovered;
+    }
+
+    /**
+     * Corrupts the last byte of the last record of the journal, as a write cut short by a crash would
+     *
+     * @throws IOException if the segment cannot be rewritten
+     */
+    private void tearLastRecord() throws IOException {
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(path -> path.getFileName().toString().startsWith("journal-"))
+                    .max(Path::compareTo)
+                    .orElseThrow();
+        }
+        byte[] bytes = Files.readAllBytes(segment);
+        ByteBuffer data = ByteBuffer.wrap(bytes);
+        int last = -1;
+        while (data.remaining() >= 2 * Integer.BYTES) {
+            int length = data.getInt(data.position());
+            if (length <= 0)
+                break;
+            last = data.position() + 2 * Integer.BYTES + length - 1;
+            data.position(last + 1);
+        }
+        bytes[last] ^= 1;
+        Files.write(segment, bytes);
+    }
+
+    private static GameRegistry registry() {
+        return new GameRegistry(1, Duration.ofHours(1), 1L << 30, BoardGenerator.DEFAULT);
+    }
+}